@@ -20,13 +20,13 @@
 package org.jetbrains.plugins.spotbugs.actions;
 
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.*;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.wm.ToolWindow;
-import com.intellij.util.containers.TransferToEDTQueue;
 import edu.umd.cs.findbugs.*;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.dom4j.DocumentException;
@@ -35,13 +35,13 @@ import org.jetbrains.plugins.spotbugs.common.*;
 import org.jetbrains.plugins.spotbugs.core.*;
 import org.jetbrains.plugins.spotbugs.gui.common.*;
 import org.jetbrains.plugins.spotbugs.gui.toolwindow.view.ToolWindowPanel;
+import org.jetbrains.plugins.spotbugs.gui.tree.model.GroupTreeModel;
 import org.jetbrains.plugins.spotbugs.messages.MessageBusManager;
 import org.jetbrains.plugins.spotbugs.tasks.BackgroundableTask;
 
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.atomic.*;
 
 public final class ImportBugCollection extends AbstractAction {
 
@@ -103,11 +103,7 @@ public final class ImportBugCollection extends AbstractAction {
 			}
 		}
 
-		final AtomicBoolean taskCanceled = new AtomicBoolean();
-		final TransferToEDTQueue<Runnable> transferToEDTQueue = new TransferToEDTQueue<>("Add New Bug Instance", runnable -> {
-			runnable.run();
-			return true;
-		}, o -> project.isDisposed() || taskCanceled.get(), 500);
+		final GroupTreeModel.BulkLoad bulkLoad = ToolWindowPanel.getInstance(project).getBugTreePanel().getGroupModel().beginBulkLoad();
 
 		//Create a task to import the bug collection from XML
 		final BackgroundableTask task = new BackgroundableTask(project, "Importing Findbugs Result", true) {
@@ -119,6 +115,7 @@ public final class ImportBugCollection extends AbstractAction {
 			public void run(@NotNull final ProgressIndicator indicator) {
 
 				MessageBusManager.publishAnalysisStartedToEDT(project);
+				MessageBusManager.publishAnalysisScopeToEDT(project, null); // replaces the whole result
 				setProgressIndicator(indicator);
 				indicator.setFraction(0.0);
 				indicator.setIndeterminate(false);
@@ -139,7 +136,6 @@ public final class ImportBugCollection extends AbstractAction {
 					int bugCount = 0;
 					for (final BugInstance bugInstance : importBugCollection) {
 						if (indicator.isCanceled()) {
-							taskCanceled.set(true);
 							MessageBusManager.publishAnalysisAbortedToEDT(project);
 							Thread.currentThread().interrupt();
 							return;
@@ -148,27 +144,12 @@ public final class ImportBugCollection extends AbstractAction {
 						final double fraction = (double) bugCounter / projectStats.getTotalBugs();
 						indicator.setFraction(fraction);
 						indicator.setText2("Importing bug '" + bugCount + "' of '" + projectStats.getTotalBugs() + "' - " + bugInstance.getMessageWithoutPrefix());
-						/*
-						 * Guarantee thread visibility *one* time.
-						 */
-						final AtomicReference<BugInstance> bugInstanceRef = new AtomicReference<>(bugInstance);
-						final AtomicReference<SortedBugCollection> importBugCollectionRef =
-								new AtomicReference<>(importBugCollection);
-						final int analyzedClassCount = projectStats.getNumClasses();
-						transferToEDTQueue.offer(new Runnable() {
-							/**
-							 * Invoked by EDT.
-							 */
-							@Override
-							public void run() {
-								final Bug bug = new Bug(null, importBugCollectionRef.get(), bugInstanceRef.get());
-								MessageBusManager.publishNewBug(project, bug, analyzedClassCount);
-							}
-						});
+						final Bug bug = new Bug(null, importBugCollection, bugInstance);
+						ReadAction.run(() -> bulkLoad.add(bug));
 					}
 
 					EventDispatchThreadHelper.invokeLater(() -> {
-						transferToEDTQueue.drain();
+						bulkLoad.commit();
 						BalloonTipFactory.showToolWindowInfoNotifier(project, "Imported bug collection from '" + fileToImport + "'.");
 					});
 
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.common;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Tells whether the anchor of a problem was mostly edited since it was resolved, see
+ * {@link ExtendedProblemDescriptor#isStale()}. Only the length and the word hashes of the anchor text are kept,
+ * not the text itself.
+ */
+final class AnchorEdits {
+
+	/**
+	 * Ratio of the anchor length, and of the words of the anchor, an edit of the anchor may change until the problem
+	 * is stale.
+	 */
+	private static final double STALE_EDIT_RATIO = 0.5;
+
+	private AnchorEdits() {
+	}
+
+	/**
+	 * @return {@code true} if the length changed by more than half
+	 */
+	static boolean isLengthMostlyEdited(final int resolvedLength, final int length) {
+		return Math.abs(length - resolvedLength) > resolvedLength * STALE_EDIT_RATIO;
+	}
+
+	/**
+	 * @param words {@link #getWordHashes(CharSequence) word hashes} of the text when resolved
+	 * @return {@code true} if less than half of the words are left in the text
+	 */
+	static boolean isMostlyEdited(@NotNull final int[] words, @NotNull final CharSequence text) {
+		if (words.length == 0) {
+			return false;
+		}
+		final int[] current = getWordHashes(text);
+		int kept = 0;
+		int i = 0;
+		int j = 0;
+		while (i < words.length && j < current.length) {
+			if (words[i] == current[j]) {
+				kept++;
+				i++;
+				j++;
+			} else if (words[i] < current[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return words.length - kept > words.length * STALE_EDIT_RATIO;
+	}
+
+	/**
+	 * @return the sorted hash codes of the whitespace separated words of the text
+	 */
+	@NotNull
+	static int[] getWordHashes(@NotNull final CharSequence text) {
+		int count = 0;
+		final int[] ret = new int[text.length() / 2 + 1];
+		int hash = 0;
+		boolean inWord = false;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (Character.isWhitespace(c)) {
+				if (inWord) {
+					ret[count++] = hash;
+					hash = 0;
+					inWord = false;
+				}
+			} else {
+				hash = 31 * hash + c;
+				inWord = true;
+			}
+		}
+		if (inWord) {
+			ret[count++] = hash;
+		}
+		final int[] words = Arrays.copyOf(ret, count);
+		Arrays.sort(words);
+		return words;
+	}
+}
@@ -24,10 +24,19 @@ import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.QuickFix;
 import com.intellij.debugger.impl.DebuggerUtilsEx;
 import com.intellij.lang.annotation.ProblemGroup;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.colors.TextAttributesKey;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Segment;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
 import edu.umd.cs.findbugs.MethodAnnotation;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -35,29 +44,34 @@ import org.jetbrains.plugins.spotbugs.common.util.BugInstanceUtil;
 import org.jetbrains.plugins.spotbugs.common.util.IdeaUtilImpl;
 import org.jetbrains.plugins.spotbugs.core.Bug;
 
+/**
+ * A problem of the problem cache. It holds no PSI, the file is referenced by its {@link VirtualFile}
+ * and the element by a smart pointer, so the PSI of files with problems can be released.
+ */
 public class ExtendedProblemDescriptor implements ProblemDescriptor, ProblemGroup {
 
-	@NotNull
-	private final PsiFile psiFile;
+	private static final int[] NO_WORDS = new int[0];
 
-	private PsiElement psiElement;
+	@NotNull
+	private final Project project;
 
-	/**
-	 * This is the line as reported by FindBugs, rather than that computed by IDEA.
-	 */
-	private final int lineStart;
-	private final int lineEnd;
+	@NotNull
+	private final VirtualFile virtualFile;
 
 	@NotNull
 	private final Bug bug;
 
+	/**
+	 * {@code null} until resolved, so a problem of a file not opened yet holds no more than the references above.
+	 */
+	@Nullable
+	private volatile Anchor anchor;
 
-	public ExtendedProblemDescriptor(@NotNull final PsiFile psiFile, @NotNull final Bug bug) {
-		this.psiFile = psiFile;
+
+	public ExtendedProblemDescriptor(@NotNull final Project project, @NotNull final VirtualFile virtualFile, @NotNull final Bug bug) {
+		this.project = project;
+		this.virtualFile = virtualFile;
 		this.bug = bug;
-		final int[] lines = BugInstanceUtil.getSourceLines(this.bug.getInstance());
-		lineStart = lines[0] - 1;
-		lineEnd = lines[1];
 	}
 
 	@Override
@@ -100,26 +114,115 @@ public class ExtendedProblemDescriptor implements ProblemDescriptor, ProblemGrou
 		return ProblemHighlightType.GENERIC_ERROR_OR_WARNING;
 	}
 
+	/**
+	 * This is the line as reported by FindBugs, rather than that computed by IDEA.
+	 */
 	@Override
 	public int getLineNumber() {
-		return lineStart;
+		return BugInstanceUtil.getSourceLines(bug.getInstance())[0] - 1;
 	}
 
+	/**
+	 * The element is resolved by line once, later on the anchor follows edits of the file.
+	 *
+	 * @return {@code null} if no element was found or the problem is stale
+	 */
 	@Override
 	public PsiElement getPsiElement() {
-		if (psiElement != null) {
-			return psiElement;
+		if (anchor == null) {
+			final PsiFile psiFile = getPsiFile();
+			resolve(psiFile != null ? PsiDocumentManager.getInstance(project).getDocument(psiFile) : null);
+		}
+		return getResolvedPsiElement();
+	}
+
+	/**
+	 * Resolves the element of the problem, normally done in the background after the analysis,
+	 * see {@link org.jetbrains.plugins.spotbugs.core.ProblemCacheService#restartHighlighting()}, or on demand by a highlighting pass.
+	 * Resolving is done once, also if both resolve at the same time.
+	 *
+	 * @param document the document of the file, {@code null} if there is none
+	 * @return {@code false} if already resolved
+	 */
+	public synchronized boolean resolve(@Nullable final Document document) {
+		if (anchor != null) {
+			return false;
 		}
+		final PsiFile psiFile = getPsiFile();
+		if (psiFile == null) {
+			anchor = Anchor.NOT_FOUND;
+			return true;
+		}
+		final int[] lines = BugInstanceUtil.getSourceLines(bug.getInstance());
+		final int lineStart = lines[0] - 1;
+		final int lineEnd = lines[1];
+		PsiElement element;
 		if (lineStart < 0 || lineStart == 0 && lineEnd == 1) {
-			psiElement = IdeaUtilImpl.findPsiElement(psiFile, bug.getInstance(), psiFile.getProject());
+			element = IdeaUtilImpl.findPsiElement(psiFile, bug.getInstance(), project);
 		} else {
-			psiElement = IdeaUtilImpl.getElementAtLine(psiFile, lineStart);
+			element = IdeaUtilImpl.getElementAtLine(psiFile, document, lineStart);
 		}
 		final MethodAnnotation primaryMethod = BugInstanceUtil.getPrimaryMethod(bug.getInstance());
-		if (primaryMethod != null && DebuggerUtilsEx.isLambdaName(primaryMethod.getMethodName())) {
-			psiElement = IdeaUtilImpl.findOnlyLambdaExpressionOrPsiElement(psiElement);
+		if (element != null && primaryMethod != null && DebuggerUtilsEx.isLambdaName(primaryMethod.getMethodName())) {
+			element = IdeaUtilImpl.findOnlyLambdaExpressionOrPsiElement(element);
+		}
+		if (element != null) {
+			anchor = new Anchor(SmartPointerManager.getInstance(project).createSmartPsiElementPointer(element, psiFile), element.getTextLength(), AnchorEdits.getWordHashes(element.getText()));
+		} else {
+			anchor = Anchor.NOT_FOUND;
+		}
+		return true;
+	}
+
+	public boolean isResolved() {
+		return anchor != null;
+	}
+
+	/**
+	 * Unlike {@link #getPsiElement()} this never resolves the element, for callers in highlighting passes.
+	 *
+	 * @return the resolved element, {@code null} if not resolved yet, not found or stale
+	 */
+	@Nullable
+	public PsiElement getResolvedPsiElement() {
+		final Anchor anchor = this.anchor;
+		if (anchor == null || anchor.pointer == null || isStale(anchor)) {
+			return null;
 		}
-		return psiElement;
+		return anchor.pointer.getElement();
+	}
+
+	/**
+	 * A problem is stale if its element was deleted or most of its text was edited after the analysis:
+	 * its length changed by more than half, or more than half of its words were replaced, also if the length
+	 * stayed the same. The words are compared once per modification of the document.
+	 * A stale problem is not shown and not resolved again, the next analysis of the file reports it anew.
+	 */
+	public boolean isStale() {
+		final Anchor anchor = this.anchor;
+		return anchor != null && anchor.pointer != null && isStale(anchor);
+	}
+
+	private boolean isStale(@NotNull final Anchor anchor) {
+		final Segment range = anchor.pointer != null ? anchor.pointer.getRange() : null;
+		if (range == null) {
+			return true;
+		}
+		if (AnchorEdits.isLengthMostlyEdited(anchor.length, range.getEndOffset() - range.getStartOffset())) {
+			return true;
+		}
+		final Document document = FileDocumentManager.getInstance().getCachedDocument(virtualFile);
+		if (document == null) {
+			return false; // not loaded, so not edited
+		}
+		final long modificationStamp = document.getModificationStamp();
+		if (anchor.wordsCheckStamp != modificationStamp) {
+			final CharSequence text = document.getImmutableCharSequence();
+			anchor.editedWords = range.getEndOffset() > text.length() ||
+					AnchorEdits.isMostlyEdited(anchor.words, text.subSequence(range.getStartOffset(), range.getEndOffset()));
+			anchor.wordsCheckStamp = modificationStamp;
+		}
+		return anchor.editedWords;
 	}
 
 	@Override
@@ -151,7 +254,50 @@ public class ExtendedProblemDescriptor implements ProblemDescriptor, ProblemGrou
 	}
 
 	@NotNull
+	public VirtualFile getVirtualFile() {
+		return virtualFile;
+	}
+
+	/**
+	 * @return the PSI of the file, {@code null} if the file is not valid anymore
+	 */
+	@Nullable
 	public PsiFile getPsiFile() {
-		return psiFile;
+		return virtualFile.isValid() ? PsiManager.getInstance(project).findFile(virtualFile) : null;
+	}
+
+	/**
+	 * The resolved element of a problem.
+	 */
+	private static final class Anchor {
+
+		private static final Anchor NOT_FOUND = new Anchor(null, 0, NO_WORDS);
+
+		/**
+		 * Follows edits of the file without holding the PSI, {@code null} if no element was found.
+		 */
+		@Nullable
+		private final SmartPsiElementPointer<PsiElement> pointer;
+
+		private final int length;
+
+		/**
+		 * {@link AnchorEdits#getWordHashes(CharSequence) Word hashes} of the element text when resolved.
+		 */
+		@NotNull
+		private final int[] words;
+
+		/**
+		 * Document modification stamp of the last word comparison, the result is kept in {@link #editedWords}.
+		 */
+		private volatile long wordsCheckStamp = -1;
+
+		private volatile boolean editedWords;
+
+		private Anchor(@Nullable final SmartPsiElementPointer<PsiElement> pointer, final int length, @NotNull final int[] words) {
+			this.pointer = pointer;
+			this.length = length;
+			this.words = words;
+		}
 	}
 }
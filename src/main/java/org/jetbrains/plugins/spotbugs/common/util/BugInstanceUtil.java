@@ -32,11 +32,10 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.spotbugs.core.Bug;
+import org.jetbrains.plugins.spotbugs.gui.tree.BugSortKey;
 import org.jetbrains.plugins.spotbugs.gui.tree.GroupBy;
 import org.jetbrains.plugins.spotbugs.gui.tree.model.BugInstanceNode;
 
-import java.util.ArrayList;
-import java.util.List;
 
 @SuppressWarnings({"AnonymousInnerClass"})
 public class BugInstanceUtil {
@@ -161,24 +160,12 @@ public class BugInstanceUtil {
 	}
 
 
-	private static List<String> getBugInstanceGroupPath(final Bug bug, final GroupBy[] groupBy) {
-		final List<String> result = new ArrayList<String>();
-		for (final GroupBy group : groupBy) {
-			result.add(GroupBy.getGroupName(group, bug));
-		}
-
-		//Collections.reverse(result);
-		return result;
-	}
-
-
 	public static String[] getGroupPath(final Bug bug, final int depth, final GroupBy[] groupBy) {
-		final List<String> path = getBugInstanceGroupPath(bug, groupBy);
+		final BugSortKey sortKey = bug.getSortKey();
 		final String[] result = new String[depth];
 
 		for (int i = 0; i < depth; i++) {
-			final String str = path.get(i);
-			result[i] = str;
+			result[i] = sortKey.getGroupName(groupBy[i]);
 		}
 
 		return result;
@@ -186,7 +173,6 @@ public class BugInstanceUtil {
 
 
 	public static String[] getFullGroupPath(final Bug bug, final GroupBy[] groupBy) {
-		final List<String> path = getBugInstanceGroupPath(bug, groupBy);
-		return getGroupPath(bug, path.size(), groupBy);
+		return getGroupPath(bug, groupBy.length, groupBy);
 	}
 }
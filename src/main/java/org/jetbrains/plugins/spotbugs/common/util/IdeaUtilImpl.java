@@ -37,6 +37,7 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vfs.LocalFileSystem;
@@ -367,6 +368,36 @@ public final class IdeaUtilImpl {
 		return findJavaPsiClass(project, dottedName, scope);
 	}
 
+	/**
+	 * Finds a source file by its path relative to a source root, unlike {@link #findJavaPsiClass(Project, Module, String)}
+	 * without creating PSI.
+	 *
+	 * @param module     the module whose source roots are searched first, {@code null} for the source roots of the project only
+	 * @param sourcePath like java/lang/Object.java
+	 * @return the source file, {@code null} if not found
+	 */
+	@Nullable
+	public static VirtualFile findSourceFile(@NotNull final Project project, @Nullable final Module module, @NotNull final String sourcePath) {
+		if (module != null && !module.isDisposed()) {
+			final VirtualFile ret = findFileByRelativePath(ModuleRootManager.getInstance(module).getSourceRoots(true), sourcePath);
+			if (ret != null) {
+				return ret;
+			}
+		}
+		return findFileByRelativePath(ProjectRootManager.getInstance(project).getContentSourceRoots(), sourcePath);
+	}
+
+	@Nullable
+	private static VirtualFile findFileByRelativePath(@NotNull final VirtualFile[] roots, @NotNull final String relativePath) {
+		for (final VirtualFile root : roots) {
+			final VirtualFile ret = root.findFileByRelativePath(relativePath);
+			if (ret != null && !ret.isDirectory()) {
+				return ret;
+			}
+		}
+		return null;
+	}
+
 	@Nullable
 	private static PsiClass findJavaPsiClass(final Project project, @NotNull final String dottedFqClassName, @NotNull final GlobalSearchScope searchScope) {
 		/*
@@ -394,7 +425,14 @@ public final class IdeaUtilImpl {
 		if (file == null) {
 			return null;
 		}
-		final Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+		return getElementAtLine(file, PsiDocumentManager.getInstance(file.getProject()).getDocument(file), line);
+	}
+
+	/**
+	 * @param document the document of {@code file}, to look it up once for all problems of a file
+	 */
+	@Nullable
+	public static PsiElement getElementAtLine(@NotNull final PsiFile file, @Nullable final Document document, final int line) {
 		PsiElement element = null;
 		try {
 			if (document != null) {
@@ -449,8 +487,7 @@ public final class IdeaUtilImpl {
 
 	@Nullable
 	private static PsiFile getPsiFile(@NotNull final Project project, @NotNull final ExtendedProblemDescriptor problem) {
-		final PsiFile file = problem.getPsiFile();
-		return PsiManager.getInstance(project).findFile(file.getVirtualFile());
+		return PsiManager.getInstance(project).findFile(problem.getVirtualFile());
 	}
 
 
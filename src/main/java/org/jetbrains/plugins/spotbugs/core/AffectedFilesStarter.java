@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.compiler.CompileScope;
+import com.intellij.openapi.compiler.CompilerManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Background analysis of the files affected by a compilation or an auto make, started by {@link AnalysisScheduler}.
+ */
+final class AffectedFilesStarter extends FindBugsStarter {
+
+	@NotNull
+	private final Set<VirtualFile> files;
+
+	AffectedFilesStarter(@NotNull final Project project, @NotNull final Set<VirtualFile> files) {
+		super(project, "Running SpotBugs analysis for affected files...", ProgressStartType.RunInBackground);
+		this.files = Collections.unmodifiableSet(new LinkedHashSet<>(files));
+	}
+
+	@Override
+	boolean isBackground() {
+		return true;
+	}
+
+	@NotNull
+	@Override
+	Set<VirtualFile> getFiles() {
+		return files;
+	}
+
+	@Override
+	protected boolean isCompileBeforeAnalyze() {
+		return false;
+	}
+
+	@Override
+	protected void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected boolean configure(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects, final boolean justCompiled) {
+		final List<VirtualFile> valid = new ArrayList<>(files.size());
+		for (final VirtualFile file : files) {
+			if (file.isValid()) { // file can be deleted while the request was pending
+				valid.add(file);
+			}
+		}
+		projects.addFiles(valid, false, hasTests(valid));
+		return true;
+	}
+}
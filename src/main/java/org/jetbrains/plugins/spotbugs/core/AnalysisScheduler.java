@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Alarm;
+import com.intellij.util.io.storage.HeavyProcessLatch;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.spotbugs.common.EventDispatchThreadHelper;
+import org.jetbrains.plugins.spotbugs.messages.AnalysisAbortingListener;
+import org.jetbrains.plugins.spotbugs.messages.MessageBusManager;
+import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Single entry point for all analysis requests of a project (actions, check in, after compile and after auto make).
+ * Only one analysis runs at a time, further requests are queued:
+ * <ul>
+ * <li>Background requests (after compile / auto make) are merged into one pending request, so only the union
+ * of the affected files is analyzed once the running analysis is done.</li>
+ * <li>Interactive requests run before background requests. A running background analysis is canceled in favour of
+ * an interactive request, its files are queued again.</li>
+ * <li>A running background analysis is canceled if a newer background request covers all of its files.</li>
+ * <li>Modal requests (before check in) start immediately because the caller waits for the result. A running
+ * analysis is canceled and the modal request waits until it stopped.</li>
+ * </ul>
+ * The queue state is published by {@link MessageBusManager#publishAnalysisQueueChanged(Project, int, boolean)}.
+ * EDT thread confinement.
+ */
+public final class AnalysisScheduler implements Disposable, AnalysisAbortingListener {
+
+	private static final Logger LOGGER = Logger.getInstance(AnalysisScheduler.class);
+
+	private static final long STOP_TIMEOUT_MS = 30000;
+
+	@NotNull
+	private final Project project;
+
+	@NotNull
+	private final Alarm alarm;
+
+	@NotNull
+	private final Deque<FindBugsStarter> interactive;
+
+	@Nullable
+	private FindBugsStarter running;
+
+	@Nullable
+	private Set<VirtualFile> backgroundFiles;
+
+	private boolean backgroundDue;
+
+	public AnalysisScheduler(@NotNull final Project project) {
+		this.project = project;
+		alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+		interactive = new ArrayDeque<>();
+	}
+
+	void schedule(@NotNull final FindBugsStarter starter) {
+		EventDispatchThreadHelper.checkEDT();
+		subscribe();
+		if (starter.isModal()) {
+			// the caller waits for the result, so the running analysis must give way
+			final FindBugsStarter current = running;
+			supersedeRunning();
+			if (current != null) {
+				awaitStopped(current);
+			}
+			startNow(starter);
+		} else if (running == null) {
+			startNow(starter);
+		} else {
+			interactive.addLast(starter);
+			if (running.isBackground()) {
+				supersedeRunning();
+			}
+		}
+		publishQueueState();
+	}
+
+	/**
+	 * @param files   affected files, merged with the files of pending background requests
+	 * @param delayMs quiet period before the analysis starts, restarted by every request
+	 */
+	public void scheduleBackground(@NotNull final Collection<VirtualFile> files, final int delayMs) {
+		EventDispatchThreadHelper.checkEDT();
+		if (files.isEmpty()) {
+			return;
+		}
+		subscribe();
+		final FindBugsStarter current = running;
+		if (current != null && current.isBackground() && !current.isSuperseded()) {
+			final Set<VirtualFile> runningFiles = current.getFiles();
+			if (runningFiles != null && files.containsAll(runningFiles)) {
+				LOGGER.debug("Cancel background analysis, replaced by a newer request");
+				current.supersede();
+			}
+		}
+		addBackgroundFiles(files);
+		backgroundDue = false;
+		alarm.cancelAllRequests();
+		if (delayMs <= 0) {
+			backgroundDue = true;
+			startNext();
+		} else {
+			addBackgroundRequest(delayMs);
+		}
+		publishQueueState();
+	}
+
+	void finished(@NotNull final FindBugsStarter starter) {
+		EventDispatchThreadHelper.checkEDT();
+		if (starter != running) {
+			return; // superseded by a modal request
+		}
+		running = null;
+		startNext();
+		publishQueueState();
+	}
+
+	@Override
+	public void analysisAborting() {
+		// user wants to stop, drop everything still waiting
+		interactive.clear();
+		backgroundFiles = null;
+		backgroundDue = false;
+		alarm.cancelAllRequests();
+		publishQueueState();
+	}
+
+	@Override
+	public void dispose() {
+		interactive.clear();
+		backgroundFiles = null;
+		running = null;
+	}
+
+	private void subscribe() {
+		// subscribe is a no-op if already done
+		MessageBusManager.subscribe(project, this, AnalysisAbortingListener.TOPIC, this);
+	}
+
+	private void addBackgroundRequest(final int delayMs) {
+		alarm.addRequest(() -> {
+			if (HeavyProcessLatch.INSTANCE.isRunning()) {
+				addBackgroundRequest(delayMs);
+			} else {
+				backgroundDue = true;
+				startNext();
+				publishQueueState();
+			}
+		}, delayMs);
+	}
+
+	private void addBackgroundFiles(@NotNull final Collection<VirtualFile> files) {
+		if (backgroundFiles == null) {
+			backgroundFiles = new LinkedHashSet<>();
+		}
+		backgroundFiles.addAll(files);
+	}
+
+	private void supersedeRunning() {
+		final FindBugsStarter current = running;
+		if (current != null && !current.isSuperseded()) {
+			final Set<VirtualFile> files = current.getFiles();
+			if (current.isBackground() && files != null) {
+				addBackgroundFiles(files);
+				backgroundDue = true;
+			}
+			current.supersede();
+		}
+	}
+
+	private void startNext() {
+		if (running != null || project.isDisposed()) {
+			return;
+		}
+		FindBugsStarter next = interactive.pollFirst();
+		if (next == null && backgroundDue && backgroundFiles != null) {
+			next = new AffectedFilesStarter(project, backgroundFiles);
+			backgroundFiles = null;
+			backgroundDue = false;
+		}
+		if (next != null) {
+			startNow(next);
+		}
+	}
+
+	private void startNow(@NotNull final FindBugsStarter starter) {
+		running = starter;
+		boolean started = false;
+		try {
+			starter.startScheduled();
+			started = true;
+		} finally {
+			if (!started && running == starter) {
+				running = null;
+				startNext();
+			}
+		}
+	}
+
+	/**
+	 * Two analyses must not publish their results at the same time, so a modal request waits
+	 * until the superseded analysis stopped.
+	 */
+	private void awaitStopped(@NotNull final FindBugsStarter superseded) {
+		if (!superseded.isAnalyzing()) {
+			return;
+		}
+		ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
+			try {
+				if (!superseded.awaitStopped(STOP_TIMEOUT_MS)) {
+					LOGGER.warn("Superseded SpotBugs analysis did not stop within " + STOP_TIMEOUT_MS + " ms");
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, ResourcesLoader.getString("analysis.waitForStop"), false, project);
+	}
+
+	private void publishQueueState() {
+		if (!project.isDisposed()) {
+			final int pending = interactive.size() + (backgroundFiles != null ? 1 : 0);
+			MessageBusManager.publishAnalysisQueueChanged(project, pending, running != null);
+		}
+	}
+
+	@NotNull
+	public static AnalysisScheduler getInstance(@NotNull final Project project) {
+		return project.getService(AnalysisScheduler.class);
+	}
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.config.UserPreferences;
+import org.dom4j.DocumentException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.spotbugs.common.util.FindBugsCustomPluginUtil;
+import org.jetbrains.plugins.spotbugs.common.util.WithPluginClassloader;
+import org.jetbrains.plugins.spotbugs.worker.AnalysisWorker;
+import org.jetbrains.plugins.spotbugs.worker.WorkerProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the analysis in separate JVM processes ({@link AnalysisWorker}) so the engine does not use the IDE heap.
+ * <p>
+ * The bugs are streamed back and reported to the {@link Reporter} while the worker is still analyzing.
+ * Idle workers are kept and reused by the next analysis with the same heap settings.
+ */
+@Service(Service.Level.APP)
+public final class AnalysisWorkers implements Disposable {
+
+	private static final Logger LOGGER = Logger.getInstance(AnalysisWorkers.class);
+
+	private static final long CANCEL_POLL_MS = 200;
+	private static final long CANCEL_TIMEOUT_MS = 10000;
+	private static final String LOG_FILE_NAME = "spotbugs-worker.log";
+
+	@NotNull
+	private final Deque<WorkerProcess> idle = new ArrayDeque<>(); // @GuardedBy idle
+
+	/**
+	 * @param maxHeapMb maximum heap of the worker JVM, {@code 0} for the JVM default
+	 */
+	void analyze(
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final UserPreferences userPrefs,
+			final int maxHeapMb,
+			@NotNull final Reporter reporter
+	) throws IOException {
+
+		final WorkerProcess worker = acquire(maxHeapMb);
+		try {
+			worker.analyze(findBugsProject, userPrefs, reporter);
+		} finally {
+			if (worker.reusable) {
+				release(worker);
+			} else {
+				worker.destroy();
+			}
+		}
+	}
+
+	@NotNull
+	private WorkerProcess acquire(final int maxHeapMb) throws IOException {
+		synchronized (idle) {
+			final Iterator<WorkerProcess> it = idle.iterator();
+			while (it.hasNext()) {
+				final WorkerProcess worker = it.next();
+				if (!worker.process.isAlive()) {
+					it.remove();
+				} else if (worker.maxHeapMb == maxHeapMb) {
+					it.remove();
+					return worker;
+				}
+			}
+		}
+		return WorkerProcess.start(maxHeapMb);
+	}
+
+	private void release(@NotNull final WorkerProcess worker) {
+		synchronized (idle) {
+			idle.push(worker);
+		}
+	}
+
+	@Override
+	public void dispose() {
+		synchronized (idle) {
+			for (final WorkerProcess worker : idle) {
+				worker.destroy();
+			}
+			idle.clear();
+		}
+	}
+
+	@NotNull
+	public static AnalysisWorkers getInstance() {
+		return ApplicationManager.getApplication().getService(AnalysisWorkers.class);
+	}
+
+	private static final class WorkerProcess {
+
+		private final int maxHeapMb;
+
+		@NotNull
+		private final Process process;
+
+		@NotNull
+		private final DataOutputStream out;
+
+		@NotNull
+		private final DataInputStream in;
+
+		/**
+		 * Whether the last analysis ended with a complete {@link WorkerProtocol#DONE} or {@link WorkerProtocol#ERROR} frame.
+		 */
+		private boolean reusable;
+
+		private WorkerProcess(final int maxHeapMb, @NotNull final Process process) {
+			this.maxHeapMb = maxHeapMb;
+			this.process = process;
+			out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+		}
+
+		@NotNull
+		static WorkerProcess start(final int maxHeapMb) throws IOException {
+			final List<String> command = new ArrayList<>();
+			command.add(new File(new File(System.getProperty("java.home"), "bin"), SystemInfo.isWindows ? "java.exe" : "java").getPath());
+			if (maxHeapMb > 0) {
+				command.add("-Xmx" + maxHeapMb + "m");
+			}
+			command.add("-cp");
+			command.add(createClasspath());
+			command.add(AnalysisWorker.class.getName());
+
+			final File logFile = new File(PathManager.getLogPath(), LOG_FILE_NAME);
+			LOGGER.info("Start SpotBugs worker, see " + logFile + " for its output");
+			final Process process = new ProcessBuilder(command)
+					.redirectError(ProcessBuilder.Redirect.appendTo(logFile))
+					.start();
+			return new WorkerProcess(maxHeapMb, process);
+		}
+
+		/**
+		 * The plugin jar and all jars next to the SpotBugs jar (the lib directory of the plugin).
+		 */
+		@NotNull
+		private static String createClasspath() throws IOException {
+			final Set<String> ret = new LinkedHashSet<>();
+			ret.add(getJarPath(AnalysisWorker.class));
+			final File[] libs = new File(getJarPath(FindBugs2.class)).getParentFile().listFiles((dir, name) -> name.endsWith(".jar"));
+			if (libs != null) {
+				for (final File lib : libs) {
+					ret.add(lib.getPath());
+				}
+			}
+			return String.join(File.pathSeparator, ret);
+		}
+
+		@NotNull
+		private static String getJarPath(@NotNull final Class<?> clazz) throws IOException {
+			final String ret = PathManager.getJarPathForClass(clazz);
+			if (ret == null) {
+				throw new IOException("Could not locate " + clazz.getName());
+			}
+			return ret;
+		}
+
+		void analyze(
+				@NotNull final FindBugsProject findBugsProject,
+				@NotNull final UserPreferences userPrefs,
+				@NotNull final Reporter reporter
+		) throws IOException {
+
+			reusable = false;
+			writeRequest(findBugsProject, userPrefs);
+
+			final AtomicLong cancelSent = new AtomicLong();
+			final AtomicBoolean destroyed = new AtomicBoolean();
+			final ScheduledFuture<?> cancelWatcher = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+				if (cancelSent.get() == 0) {
+					if (reporter.checkCancel()) {
+						cancelSent.set(System.currentTimeMillis());
+						try {
+							synchronized (out) {
+								out.writeByte(WorkerProtocol.CANCEL);
+								out.flush();
+							}
+						} catch (final IOException e) {
+							LOGGER.warn("Could not cancel SpotBugs worker", e);
+						}
+					}
+				} else if (System.currentTimeMillis() - cancelSent.get() > CANCEL_TIMEOUT_MS && destroyed.compareAndSet(false, true)) {
+					LOGGER.warn("SpotBugs worker did not acknowledge cancel within " + CANCEL_TIMEOUT_MS + " ms, destroy it");
+					process.destroyForcibly();
+				}
+			}, CANCEL_POLL_MS, CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+			try {
+				readResults(reporter);
+			} catch (final IOException e) {
+				if (!destroyed.get()) {
+					throw e;
+				}
+				LOGGER.debug("SpotBugs worker destroyed after cancel", e);
+			} finally {
+				cancelWatcher.cancel(false);
+			}
+			reporter.finish();
+		}
+
+		private void writeRequest(@NotNull final FindBugsProject findBugsProject, @NotNull final UserPreferences userPrefs) throws IOException {
+			final List<String> pluginUrls = new ArrayList<>();
+			final List<String> enabledPluginIds = new ArrayList<>();
+			final List<String> disabledPluginIds = new ArrayList<>();
+			for (final Plugin plugin : Plugin.getAllPlugins()) {
+				if (plugin.isCorePlugin()) {
+					continue;
+				}
+				pluginUrls.add(FindBugsCustomPluginUtil.getAsString(plugin));
+				final Boolean status = findBugsProject.getPluginStatus(plugin);
+				if (Boolean.TRUE.equals(status)) {
+					enabledPluginIds.add(plugin.getPluginId());
+				} else if (Boolean.FALSE.equals(status)) {
+					disabledPluginIds.add(plugin.getPluginId());
+				}
+			}
+			final ByteArrayOutputStream userPreferences = new ByteArrayOutputStream();
+			userPrefs.write(userPreferences);
+
+			synchronized (out) {
+				out.writeByte(WorkerProtocol.ANALYZE);
+				WorkerProtocol.writeStrings(out, pluginUrls);
+				WorkerProtocol.writeString(out, findBugsProject.getProjectName());
+				WorkerProtocol.writeStrings(out, findBugsProject.getFileList());
+				WorkerProtocol.writeStrings(out, findBugsProject.getAuxClasspathEntryList());
+				WorkerProtocol.writeStrings(out, findBugsProject.getSourceDirList());
+				WorkerProtocol.writeStrings(out, enabledPluginIds);
+				WorkerProtocol.writeStrings(out, disabledPluginIds);
+				WorkerProtocol.writeBytes(out, userPreferences.toByteArray());
+				out.flush();
+			}
+		}
+
+		private void readResults(@NotNull final Reporter reporter) throws IOException {
+			while (true) {
+				final byte type;
+				try {
+					type = in.readByte();
+				} catch (final EOFException e) {
+					throw new IOException("SpotBugs worker terminated unexpectedly, see " + LOG_FILE_NAME, e);
+				}
+				switch (type) {
+					case WorkerProtocol.BUG:
+						for (final BugInstance bug : readBugs(WorkerProtocol.readBytes(in))) {
+							reporter.reportBug(bug);
+						}
+						break;
+					case WorkerProtocol.NUMBER_OF_ARCHIVES:
+						reporter.reportNumberOfArchives(in.readInt());
+						break;
+					case WorkerProtocol.FINISH_ARCHIVE:
+						reporter.finishArchive();
+						break;
+					case WorkerProtocol.START_ANALYSIS:
+						reporter.startAnalysis(in.readInt());
+						break;
+					case WorkerProtocol.FINISH_CLASS:
+						reporter.finishClass();
+						break;
+					case WorkerProtocol.FINISH_PER_CLASS_ANALYSIS:
+						reporter.finishPerClassAnalysis();
+						break;
+					case WorkerProtocol.PREDICT_PASS_COUNT:
+						final int[] classesPerPass = new int[in.readInt()];
+						for (int i = 0; i < classesPerPass.length; i++) {
+							classesPerPass[i] = in.readInt();
+						}
+						reporter.predictPassCount(classesPerPass);
+						break;
+					case WorkerProtocol.DONE:
+						in.readBoolean(); // canceled, the reporter knows it already
+						final int classCount = in.readInt();
+						for (int i = 0; i < classCount; i++) {
+							final String className = WorkerProtocol.readString(in);
+							final String sourceFile = WorkerProtocol.readString(in);
+							final int size = in.readInt();
+							reporter.getProjectStats().addClass(className, sourceFile.isEmpty() ? null : sourceFile, false, size);
+						}
+						reusable = true;
+						return;
+					case WorkerProtocol.ERROR:
+						final String stackTrace = WorkerProtocol.readString(in);
+						reusable = true;
+						throw new IOException("SpotBugs worker failed: " + stackTrace);
+					default:
+						throw new IOException("Unknown frame type " + type);
+				}
+			}
+		}
+
+		@NotNull
+		private static List<BugInstance> readBugs(@NotNull final byte[] xml) throws IOException {
+			final SortedBugCollection bugCollection = new SortedBugCollection();
+			try {
+				WithPluginClassloader.compute(() -> {
+					bugCollection.readXML(new ByteArrayInputStream(xml));
+					return null;
+				});
+			} catch (final DocumentException e) {
+				throw new IOException(e);
+			}
+			return new ArrayList<>(bugCollection.getCollection());
+		}
+
+		void destroy() {
+			try {
+				out.close(); // worker exits on end of input
+			} catch (final IOException ignore) {
+			}
+			process.destroy();
+		}
+	}
+}
@@ -25,6 +25,7 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.spotbugs.gui.tree.BugSortKey;
 
 public final class Bug {
 	@Nullable
@@ -36,6 +37,12 @@ public final class Bug {
 	@NotNull
 	private final BugInstance instance;
 
+	/**
+	 * Created on first use; a race only computes the same key twice.
+	 */
+	@Nullable
+	private volatile BugSortKey sortKey;
+
 	public Bug(
 			@Nullable final Module module,
 			@NotNull final SortedBugCollection bugCollection,
@@ -61,6 +68,16 @@ public final class Bug {
 		return instance;
 	}
 
+	@NotNull
+	public BugSortKey getSortKey() {
+		BugSortKey ret = sortKey;
+		if (ret == null) {
+			ret = new BugSortKey(instance);
+			sortKey = ret;
+		}
+		return ret;
+	}
+
 	@SuppressWarnings("SimplifiableIfStatement")
 	@Override
 	public boolean equals(Object o) {
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.util.io.FileUtil;
+import edu.umd.cs.findbugs.PackageStats;
+import edu.umd.cs.findbugs.ProjectStats;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns the bugs found by one engine over several modules back to their {@link Module},
+ * see {@link WorkspaceSettings#analyzeModulesInSingleEngine}.
+ * <p>
+ * The index maps the dotted class name of each analyzed class file to the module which added the file.
+ * Each module gets its own {@link SortedBugCollection} so the result looks like the result of a per-module analysis.
+ */
+final class ClassModuleIndex {
+
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
+	@NotNull
+	private final Module defaultModule;
+
+	@NotNull
+	private final Map<String, Module> moduleByClass;
+
+	@NotNull
+	private final Map<Module, FindBugsProject> projectByModule;
+
+	@NotNull
+	private final Map<Module, SortedBugCollection> bugCollectionByModule;
+
+	private ClassModuleIndex(@NotNull final Module defaultModule) {
+		this.defaultModule = defaultModule;
+		moduleByClass = new HashMap<>();
+		projectByModule = new HashMap<>();
+		bugCollectionByModule = new HashMap<>();
+	}
+
+	@NotNull
+	static ClassModuleIndex create(@NotNull final Module defaultModule, @NotNull final Map<Module, FindBugsProject> projects) {
+		final ClassModuleIndex ret = new ClassModuleIndex(defaultModule);
+		for (final Map.Entry<Module, FindBugsProject> entry : projects.entrySet()) {
+			final Module module = entry.getKey();
+			final FindBugsProject findBugsProject = entry.getValue();
+			ret.projectByModule.put(module, findBugsProject);
+			ret.bugCollectionByModule.put(module, new SortedBugCollection(findBugsProject));
+
+			for (final String className : getClassNames(findBugsProject)) {
+				ret.moduleByClass.put(className, module);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the dotted class names of the class files of {@code findBugsProject} below one of its aux classpath entries
+	 */
+	@NotNull
+	static List<String> getClassNames(@NotNull final FindBugsProject findBugsProject) {
+		final List<String> roots = new ArrayList<>();
+		for (final String auxClasspathEntry : findBugsProject.getAuxClasspathEntryList()) {
+			roots.add(withTrailingSlash(FileUtil.toSystemIndependentName(auxClasspathEntry)));
+		}
+		final List<String> ret = new ArrayList<>();
+		for (final String file : findBugsProject.getFileList()) {
+			final String path = FileUtil.toSystemIndependentName(file);
+			if (!path.endsWith(CLASS_FILE_SUFFIX)) {
+				continue;
+			}
+			for (final String root : roots) {
+				if (path.startsWith(root)) {
+					ret.add(path.substring(root.length(), path.length() - CLASS_FILE_SUFFIX.length()).replace('/', '.'));
+					break;
+				}
+			}
+		}
+		return ret;
+	}
+
+	@NotNull
+	Module getModule(@NotNull final String className) {
+		Module ret = moduleByClass.get(className);
+		if (ret == null) {
+			final int nested = className.indexOf('$');
+			if (nested > 0) {
+				ret = moduleByClass.get(className.substring(0, nested));
+			}
+		}
+		return ret != null ? ret : defaultModule;
+	}
+
+	@NotNull
+	SortedBugCollection getBugCollection(@NotNull final Module module) {
+		final SortedBugCollection ret = bugCollectionByModule.get(module);
+		if (ret == null) {
+			throw new IllegalStateException("Module " + module.getName() + " is not part of the analysis");
+		}
+		return ret;
+	}
+
+	/**
+	 * Puts the per-module bug collections into {@code result} and distributes the class statistics
+	 * of the engine to the modules of the classes.
+	 *
+	 * @param engineStats statistics of the engine which analyzed all modules
+	 */
+	void putResults(@NotNull final FindBugsResult result, @NotNull final ProjectStats engineStats) {
+		for (final PackageStats packageStats : engineStats.getPackageStats()) {
+			for (final PackageStats.ClassStats classStats : packageStats.getClassStats()) {
+				final SortedBugCollection bugCollection = bugCollectionByModule.get(getModule(classStats.getName()));
+				if (bugCollection != null) {
+					bugCollection.getProjectStats().addClass(classStats.getName(), classStats.getSourceFile(), false, classStats.size());
+				}
+			}
+		}
+		final long timestamp = System.currentTimeMillis();
+		for (final Map.Entry<Module, FindBugsProject> entry : projectByModule.entrySet()) {
+			final SortedBugCollection bugCollection = bugCollectionByModule.get(entry.getKey());
+			bugCollection.setTimestamp(timestamp);
+			result.put(entry.getValue(), bugCollection);
+		}
+	}
+
+	@NotNull
+	private static String withTrailingSlash(@NotNull final String path) {
+		return path.endsWith("/") ? path : path + "/";
+	}
+}
@@ -23,19 +23,14 @@ import com.intellij.compiler.server.BuildManagerListener;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.compiler.CompileScope;
-import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
-import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.impl.BulkVirtualFileListenerAdapter;
-import com.intellij.util.Alarm;
-import com.intellij.util.Consumer;
-import com.intellij.util.io.storage.HeavyProcessLatch;
 import com.intellij.util.messages.MessageBusConnection;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
@@ -47,7 +42,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -56,7 +50,6 @@ public class FindBugsCompileAfterHook {
 	private static final int DEFAULT_DELAY_MS = 30000;
 	private static final int DELAY_MS = StringUtil.parseInt(System.getProperty("idea.findbugs.autoanalyze.delaymillis", String.valueOf(DEFAULT_DELAY_MS)), DEFAULT_DELAY_MS);
 	private static final ConcurrentMap<UUID, Set<VirtualFile>> CHANGED_BY_SESSION_ID = new ConcurrentHashMap<>();
-	private static final WeakHashMap<Project, DelayedExecutor> DELAYED_EXECUTOR_BY_PROJECT = new WeakHashMap<>();
 	private static ChangeCollector CHANGE_COLLECTOR; // EDT thread confinement
 	private static MessageBusConnection connection;
 
@@ -88,18 +81,7 @@ public class FindBugsCompileAfterHook {
 				if (isAutomake) {
 					final Set<VirtualFile> changed = CHANGED_BY_SESSION_ID.remove(sessionId);
 					if (changed != null) {
-						if (DELAY_MS <= 0) {
-							initWorkerForAutoMake(project, changed);
-						} else {
-							synchronized (DELAYED_EXECUTOR_BY_PROJECT) {
-								DelayedExecutor task = DELAYED_EXECUTOR_BY_PROJECT.get(project);
-								if (task == null) {
-									task = new DelayedExecutor(project);
-									DELAYED_EXECUTOR_BY_PROJECT.put(project, task);
-								}
-								task.schedule(changed);
-							}
-						}
+						scheduleBackground(project, changed, DELAY_MS);
 					}
 				} // else do nothing
 			}
@@ -140,26 +122,7 @@ public class FindBugsCompileAfterHook {
 		final CompileScope compileScope = compileContext.getCompileScope();
 		final List<VirtualFile> affectedFiles = getAffectedFiles(project, compileScope);
 
-		new FindBugsStarter(
-				project,
-				"Running SpotBugs analysis for affected files...",
-				ProgressStartType.RunInBackground
-		) {
-			@Override
-			protected boolean isCompileBeforeAnalyze() {
-				return false;
-			}
-
-			@Override
-			protected void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer) {
-				throw new UnsupportedOperationException();
-			}
-
-			@Override
-			protected boolean configure(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects, final boolean justCompiled) {
-				return projects.addFiles(affectedFiles, false, hasTests(affectedFiles));
-			}
-		}.start();
+		scheduleBackground(project, affectedFiles, 0);
 	}
 
 	@NotNull
@@ -186,69 +149,11 @@ public class FindBugsCompileAfterHook {
 		return settings.analyzeAfterAutoMake;
 	}
 
-	private static void initWorkerForAutoMake(@NotNull final Project project, @NotNull final Collection<VirtualFile> changed) {
-		ApplicationManager.getApplication().runReadAction(() -> initWorkerForAutoMakeImpl(project, changed));
-	}
-
-	private static void initWorkerForAutoMakeImpl(@NotNull final Project project, @NotNull final Collection<VirtualFile> changed) {
-		EventDispatchThreadHelper.invokeLater(() -> new FindBugsStarter(
-				project,
-				"Running SpotBugs analysis for affected files...",
-				ProgressStartType.RunInBackground
-		) {
-			@Override
-			protected boolean isCompileBeforeAnalyze() {
-				return false;
-			}
-
-			@Override
-			protected void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer) {
-				throw new UnsupportedOperationException();
-			}
-
-			@Override
-			protected boolean configure(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects, final boolean justCompiled) {
-				projects.addFiles(changed, false, hasTests(changed));
-				return true;
-			}
-		}.start());
-	}
-
-	private static class DelayedExecutor {
-		private final Project _project;
-		private final Alarm _alarm;
-		private Set<VirtualFile> _changed;
-
-		DelayedExecutor(@NotNull final Project project) {
-			_project = project;
-			_alarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, project);
-		}
-
-		void schedule(@NotNull final Set<VirtualFile> changed) {
-			_alarm.cancelAllRequests();
-			synchronized (this) {
-				if (_changed == null) {
-					_changed = changed;
-				} else {
-					_changed.addAll(changed);
-				}
+	private static void scheduleBackground(@NotNull final Project project, @NotNull final Collection<VirtualFile> files, final int delayMs) {
+		EventDispatchThreadHelper.invokeLater(() -> {
+			if (!project.isDisposed()) {
+				AnalysisScheduler.getInstance(project).scheduleBackground(files, delayMs);
 			}
-			addRequest();
-		}
-
-		private void addRequest() {
-			_alarm.addRequest(() -> {
-				if (HeavyProcessLatch.INSTANCE.isRunning()) {
-					addRequest();
-				} else {
-					final Set<VirtualFile> changed;
-					synchronized (DelayedExecutor.this) {
-						changed = _changed;
-						_changed = null;
-					}
-					initWorkerForAutoMake(_project, changed);
-				}
-			}, DELAY_MS);
-		}
+		});
 	}
 }
@@ -25,7 +25,9 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import edu.umd.cs.findbugs.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.spotbugs.collectors.StatelessClassAdder;
+import org.jetbrains.plugins.spotbugs.common.util.WithPluginClassloader;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -43,6 +45,9 @@ public class FindBugsProject extends edu.umd.cs.findbugs.Project {
 
 	private StatelessClassAdder classAdder;
 
+	@Nullable
+	private WarmAnalysisContexts.Context warmContext;
+
 	private FindBugsProject(@NotNull final Project project, @NotNull final Module module) {
 		this.project = project;
 		this.module = module;
@@ -53,6 +58,18 @@ public class FindBugsProject extends edu.umd.cs.findbugs.Project {
 		return module;
 	}
 
+	/**
+	 * @return the warm aux classpath of the module, {@code null} if the aux classpath is opened by the engine
+	 */
+	@Nullable
+	WarmAnalysisContexts.Context getWarmContext() {
+		return warmContext;
+	}
+
+	void setWarmContext(@Nullable final WarmAnalysisContexts.Context warmContext) {
+		this.warmContext = warmContext;
+	}
+
 	@NotNull
 	private StatelessClassAdder getClassAdder() {
 		if (classAdder == null) {
@@ -82,6 +99,37 @@ public class FindBugsProject extends edu.umd.cs.findbugs.Project {
 		return _outputFiles != null ? _outputFiles : Collections.emptyList();
 	}
 
+	/**
+	 * Creates a project for a part of the files of this project with the same source dirs, aux classpath and plugin status.
+	 */
+	@NotNull
+	FindBugsProject createShard(@NotNull final String projectName, @NotNull final List<String> files) {
+		final FindBugsProject ret = WithPluginClassloader.notNull(() -> create(project, module, projectName));
+		for (final String file : files) {
+			ret.addFile(file);
+		}
+		ret.addSourceDirs(getSourceDirList());
+		for (final String auxClasspathEntry : getAuxClasspathEntryList()) {
+			ret.addAuxClasspathEntry(auxClasspathEntry);
+		}
+		ret.warmContext = warmContext;
+		return ret;
+	}
+
+	/**
+	 * Creates the project for a {@link WarmFindBugs2}, with the files, source dirs and plugin status of this project,
+	 * the engine adds the aux classpath from the warm context.
+	 */
+	@NotNull
+	FindBugsProject createWithoutAuxClasspath() {
+		final FindBugsProject ret = WithPluginClassloader.notNull(() -> create(project, module, getProjectName()));
+		for (final String file : getFileList()) {
+			ret.addFile(file);
+		}
+		ret.addSourceDirs(getSourceDirList());
+		return ret;
+	}
+
 	@NotNull
 	static FindBugsProject create(
 			@NotNull final Project project,
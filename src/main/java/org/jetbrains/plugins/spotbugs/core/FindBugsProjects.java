@@ -22,10 +22,13 @@ package org.jetbrains.plugins.spotbugs.core;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.CompilerModuleExtension;
 import com.intellij.openapi.roots.CompilerProjectExtension;
 import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
@@ -41,7 +44,6 @@ import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -58,13 +60,18 @@ public final class FindBugsProjects {
 	@NotNull
 	private final Map<Module, FindBugsProject> projects;
 
+	@NotNull
+	private final WarmAnalysisContexts warmAnalysisContexts;
+
 	FindBugsProjects(@NotNull final Project project) {
 		this.project = project;
 		projects = new HashMap<>();
+		warmAnalysisContexts = WarmAnalysisContexts.getInstance(project);
 	}
 
 	public boolean addFiles(@NotNull final Iterable<VirtualFile> files, final boolean checkCompiled, final boolean includeTests) {
 		for (final VirtualFile file : files) {
+			ProgressManager.checkCanceled();
 			if (!addFile(file, checkCompiled, includeTests) && checkCompiled) {
 				return false;
 			}
@@ -74,6 +81,7 @@ public final class FindBugsProjects {
 
 	public boolean addFiles(@NotNull final VirtualFile[] files, final boolean checkCompiled, final boolean includeTests) {
 		for (final VirtualFile file : files) {
+			ProgressManager.checkCanceled();
 			if (!addFile(file, checkCompiled, includeTests) && checkCompiled) {
 				return false;
 			}
@@ -132,25 +140,34 @@ public final class FindBugsProjects {
 					makeProjectName(module)
 			));
 
-			final VirtualFile[] sourceRoots = getSourceRoots(module, includeTests);
-			for (final VirtualFile sourceRoot : sourceRoots) {
-				if (!ret.addSourceDir(sourceRoot.getCanonicalPath())) {
-					LOGGER.debug(String.format("Source directory '%s' of module '%s' already added", sourceRoot, module.getName()));
+			final WarmAnalysisContexts.Context context = warmAnalysisContexts.getContext(module, includeTests, () -> createContext(module, includeTests));
+			for (final String sourceDir : context.sourceDirs) {
+				if (!ret.addSourceDir(sourceDir)) {
+					LOGGER.debug(String.format("Source directory '%s' of module '%s' already added", sourceDir, module.getName()));
 				}
 			}
 
-			final Collection<VirtualFile> compilerOutputPaths = getCompilerOutputPaths(module, includeTests);
-			for (final VirtualFile compilerOutputPath : compilerOutputPaths) {
-				if (!ret.addAuxClasspathEntry(compilerOutputPath.getCanonicalPath())) {
-					LOGGER.debug(String.format("Aux classpath '%s' of module '%s' already added", compilerOutputPath, module.getName()));
+			for (final String auxClasspathEntry : context.getAuxClasspathEntries()) {
+				if (!ret.addAuxClasspathEntry(auxClasspathEntry)) {
+					LOGGER.debug(String.format("Aux classpath '%s' of module '%s' already added", auxClasspathEntry, module.getName()));
 				}
 			}
+			ret.setWarmContext(context);
 
 			projects.put(module, ret);
 		}
 		return ret;
 	}
 
+	@NotNull
+	private WarmAnalysisContexts.Context createContext(@NotNull final Module module, final boolean includeTests) {
+		final List<String> sourceDirs = new ArrayList<>();
+		for (final VirtualFile sourceRoot : getSourceRoots(module, includeTests)) {
+			sourceDirs.add(sourceRoot.getCanonicalPath());
+		}
+		return new WarmAnalysisContexts.Context(sourceDirs, getCompilerOutputPaths(module, includeTests));
+	}
+
 	@NotNull
 	private String makeProjectName(@Nullable final Module module) {
 		if (module != null) {
@@ -159,34 +176,61 @@ public final class FindBugsProjects {
 		return project.getName();
 	}
 
+	/**
+	 * Creates one project containing the files, source directories and aux classpath entries of all modules.
+	 *
+	 * @param module the module used for the settings of the union project
+	 */
+	@NotNull
+	FindBugsProject createUnion(@NotNull final Module module) {
+		final FindBugsProject ret = WithPluginClassloader.notNull(() -> FindBugsProject.create(
+				project,
+				module,
+				project.getName()
+		));
+		for (final FindBugsProject findBugsProject : projects.values()) {
+			for (final String file : findBugsProject.getFileList()) {
+				ret.addFile(file);
+			}
+			ret.addSourceDirs(findBugsProject.getSourceDirList());
+			for (final String auxClasspathEntry : findBugsProject.getAuxClasspathEntryList()) {
+				ret.addAuxClasspathEntry(auxClasspathEntry);
+			}
+		}
+		return ret;
+	}
+
 	@NotNull
 	Map<Module, FindBugsProject> getProjects() {
 		return projects;
 	}
 
+	/**
+	 * The paths are collected from the output URLs, so they are known before the first build created the directories.
+	 */
 	@NotNull
-	private Collection<VirtualFile> getCompilerOutputPaths(@NotNull final Module module, final boolean includeTests) {
+	private List<String> getCompilerOutputPaths(@NotNull final Module module, final boolean includeTests) {
 
-    final Set<Module> modules = new HashSet<>();
+		final Set<Module> modules = new HashSet<>();
 		ModuleUtilCore.getDependencies(module, modules);
 		modules.add(module);
 
-		final List<VirtualFile> ret = new ArrayList<>(modules.size());
+		final List<String> ret = new ArrayList<>(modules.size());
 		boolean projectFallbackExecuted = false;
 
 		for (final Module m : modules) {
 			boolean added = false;
 			final CompilerModuleExtension extension = CompilerModuleExtension.getInstance(m);
 			if (extension != null) {
-				VirtualFile path = extension.getCompilerOutputPath();
-				if (path != null) {
-					ret.add(path);
+				String url = extension.getCompilerOutputUrl();
+				if (url != null) {
+					ret.add(toCanonicalPath(url));
 					added = true;
 				}
 				if (includeTests) {
-					path = extension.getCompilerOutputPathForTests();
-					if (path != null) {
-						ret.add(path);
+					url = extension.getCompilerOutputUrlForTests();
+					if (url != null) {
+						ret.add(toCanonicalPath(url));
 						added = true;
 					}
 				}
@@ -196,9 +240,9 @@ public final class FindBugsProjects {
 					projectFallbackExecuted = true;
 					final CompilerProjectExtension compilerProjectExtension = CompilerProjectExtension.getInstance(project);
 					if (compilerProjectExtension != null) {
-						final VirtualFile path = compilerProjectExtension.getCompilerOutput();
-						if (path != null) {
-							ret.add(path);
+						final String url = compilerProjectExtension.getCompilerOutputUrl();
+						if (url != null) {
+							ret.add(toCanonicalPath(url));
 						}
 					}
 				}
@@ -207,6 +251,11 @@ public final class FindBugsProjects {
 		return ret;
 	}
 
+	@NotNull
+	private static String toCanonicalPath(@NotNull final String url) {
+		return FileUtil.toCanonicalPath(VfsUtilCore.urlToPath(url));
+	}
+
 	@NotNull
 	private VirtualFile[] getSourceRoots(@NotNull final Module module, final boolean includeTests) {
 		return ModuleRootManager.getInstance(module).getSourceRoots(includeTests);
@@ -19,15 +19,22 @@
  */
 package org.jetbrains.plugins.spotbugs.core;
 
+import com.intellij.openapi.module.Module;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.PackageStats;
 import edu.umd.cs.findbugs.Project;
 import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public final class FindBugsResult {
 	@NotNull
@@ -78,6 +85,108 @@ public final class FindBugsResult {
 		return null;
 	}
 
+	/**
+	 * Removes the bugs of the given classes, see {@link #merge(FindBugsResult)}.
+	 *
+	 * @param classNames top level class names
+	 * @return the removed bugs, by the same projects, to merge them back if the analysis replacing them is aborted
+	 */
+	@NotNull
+	public FindBugsResult removeBugs(@NotNull final Set<String> classNames) {
+		final FindBugsResult ret = new FindBugsResult();
+		for (final Map.Entry<Project, SortedBugCollection> entry : results.entrySet()) {
+			final SortedBugCollection bugCollection = entry.getValue();
+			final List<BugInstance> remove = new ArrayList<>();
+			for (final BugInstance bugInstance : bugCollection.getCollection()) {
+				if (classNames.contains(getTopLevelClassName(bugInstance.getPrimaryClass().getClassName()))) {
+					remove.add(bugInstance);
+				}
+			}
+			if (!remove.isEmpty()) {
+				final SortedBugCollection removed = new SortedBugCollection(entry.getKey());
+				for (final BugInstance bugInstance : remove) {
+					bugCollection.remove(bugInstance);
+					removed.add(bugInstance, false);
+				}
+				countBugs(bugCollection);
+				ret.put(entry.getKey(), removed);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Adds the bugs of a partial analysis to the bug collection of the same module.
+	 * Classes of the partial analysis not counted yet are added to the class statistics, the bug counts are updated.
+	 */
+	public void merge(@NotNull final FindBugsResult partial) {
+		for (final Map.Entry<Project, SortedBugCollection> entry : partial.results.entrySet()) {
+			final SortedBugCollection bugCollection = findBugCollection(entry.getKey());
+			if (bugCollection != null) {
+				// before the bugs: adding a bug creates the statistics of its class without counting the class
+				addClasses(bugCollection.getProjectStats(), entry.getValue().getProjectStats());
+				for (final BugInstance bugInstance : entry.getValue().getCollection()) {
+					bugCollection.add(bugInstance, false);
+				}
+				countBugs(bugCollection);
+			} else {
+				put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private static void addClasses(@NotNull final ProjectStats stats, @NotNull final ProjectStats partialStats) {
+		final Set<String> classNames = new HashSet<>();
+		for (final PackageStats packageStats : stats.getPackageStats()) {
+			for (final PackageStats.ClassStats classStats : packageStats.getClassStats()) {
+				classNames.add(classStats.getName());
+			}
+		}
+		for (final PackageStats packageStats : partialStats.getPackageStats()) {
+			for (final PackageStats.ClassStats classStats : packageStats.getClassStats()) {
+				if (classNames.add(classStats.getName())) {
+					stats.addClass(classStats.getName(), classStats.getSourceFile(), false, classStats.size());
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@link SortedBugCollection#remove(BugInstance)} does not update the bug counts of the statistics.
+	 */
+	private static void countBugs(@NotNull final SortedBugCollection bugCollection) {
+		final ProjectStats stats = bugCollection.getProjectStats();
+		stats.clearBugCounts();
+		for (final BugInstance bugInstance : bugCollection.getCollection()) {
+			if (!bugInstance.isDead()) {
+				stats.addBug(bugInstance);
+			}
+		}
+	}
+
+	@Nullable
+	private SortedBugCollection findBugCollection(@NotNull final Project project) {
+		final SortedBugCollection ret = results.get(project);
+		if (ret != null) {
+			return ret;
+		}
+		if (project instanceof FindBugsProject) {
+			final Module module = ((FindBugsProject) project).getModule();
+			for (final Map.Entry<Project, SortedBugCollection> entry : results.entrySet()) {
+				if (entry.getKey() instanceof FindBugsProject && module.equals(((FindBugsProject) entry.getKey()).getModule())) {
+					return entry.getValue();
+				}
+			}
+		}
+		return null;
+	}
+
+	@NotNull
+	public static String getTopLevelClassName(@NotNull final String className) {
+		final int nested = className.indexOf('$');
+		return nested > 0 ? className.substring(0, nested) : className;
+	}
+
 	@NotNull
 	public Collection<Project> getProjects() {
 		return results.keySet();
@@ -49,12 +49,22 @@ import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class FindBugsStarter implements AnalysisAbortingListener {
 
 	private static final Logger LOGGER = Logger.getInstance(FindBugsStarter.class);
 
+	/**
+	 * Expected upper bound between a cancel request and the end of the analysis, longer stops are logged as warning.
+	 */
+	private static final int DEFAULT_CANCEL_TARGET_MS = 2000;
+	private static final int CANCEL_TARGET_MS = StringUtil.parseInt(System.getProperty("idea.spotbugs.cancel.targetMillis", String.valueOf(DEFAULT_CANCEL_TARGET_MS)), DEFAULT_CANCEL_TARGET_MS);
+
 	@NotNull
 	private final Project project;
 
@@ -73,6 +83,24 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 
 	private final AtomicBoolean _cancellingByUser;
 
+	private volatile boolean superseded;
+
+	/**
+	 * Set when the analysis task is queued, see {@link #awaitStopped(long)}.
+	 */
+	private volatile boolean analyzing;
+
+	@NotNull
+	private final CountDownLatch stopped = new CountDownLatch(1);
+
+	@Nullable
+	private volatile ProgressIndicator runningIndicator;
+
+	/**
+	 * {@link System#nanoTime()} of the first cancel request, {@code 0} if none.
+	 */
+	private volatile long cancelRequestedNanos;
+
 
 	public FindBugsStarter(
 			@NotNull final Project project,
@@ -115,7 +143,14 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		return workspaceSettings.compileBeforeAnalyze;
 	}
 
+	/**
+	 * Enqueues the analysis, see {@link AnalysisScheduler}.
+	 */
 	public final void start() {
+		AnalysisScheduler.getInstance(project).schedule(this);
+	}
+
+	final void startScheduled() {
 		EventDispatchThreadHelper.checkEDT();
 		if (isCompileBeforeAnalyze()) {
 			final boolean isAnalyzeAfterCompile = workspaceSettings.analyzeAfterCompile;
@@ -132,8 +167,12 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 								EventDispatchThreadHelper.checkEDT();
 								startImpl(true);
 							});
+						} else {
+							notifyScheduler();
 						}
 					});
+				} else {
+					notifyScheduler();
 				}
 			});
 		} else {
@@ -142,6 +181,11 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 	}
 
 	private void startImpl(final boolean justCompiled) {
+		if (_cancellingByUser.get()) {
+			// canceled or superseded while compiling, nothing was published yet
+			notifyScheduler();
+			return;
+		}
 		MessageBusManager.publishAnalysisStarted(project);
 
 		if (!ApplicationManager.getApplication().isUnitTestMode()) {
@@ -180,16 +224,63 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 				}
 			};
 		}
-		task.queue();
+		analyzing = true;
+		try {
+			task.queue();
+		} catch (final RuntimeException e) {
+			stopped.countDown();
+			throw e;
+		}
 	}
 
 	private void asyncStart(@NotNull final ProgressIndicator indicator, final boolean justCompiled) {
 		indicator.setIndeterminate(true);
 		indicator.setText("Configure SpotBugs...");
+		runningIndicator = indicator;
+		if (_cancellingByUser.get()) {
+			indicator.cancel(); // canceled before the task was started
+		}
 		try {
 			asyncStartImpl(indicator, justCompiled);
 		} catch (final ProcessCanceledException ignore) {
 			MessageBusManager.publishAnalysisAbortedToEDT(project);
+		} finally {
+			runningIndicator = null;
+			logCancelLatency();
+			stopped.countDown();
+			EventDispatchThreadHelper.invokeLater(this::notifyScheduler);
+		}
+	}
+
+	private void logCancelLatency() {
+		final long requested = cancelRequestedNanos;
+		if (requested != 0) {
+			final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requested);
+			if (millis > CANCEL_TARGET_MS) {
+				LOGGER.warn("SpotBugs analysis stopped " + millis + " ms after cancel request (target " + CANCEL_TARGET_MS + " ms)");
+			} else {
+				LOGGER.info("SpotBugs analysis stopped " + millis + " ms after cancel request");
+			}
+		}
+	}
+
+	/**
+	 * Cancels the indicator too, so {@link ProgressManager#checkCanceled()} stops the file collection.
+	 */
+	private void requestCancel() {
+		if (cancelRequestedNanos == 0) {
+			cancelRequestedNanos = System.nanoTime();
+		}
+		_cancellingByUser.set(true);
+		final ProgressIndicator indicator = runningIndicator;
+		if (indicator != null) {
+			indicator.cancel();
+		}
+	}
+
+	private void notifyScheduler() {
+		if (!project.isDisposed()) {
+			AnalysisScheduler.getInstance(project).finished(this);
 		}
 	}
 
@@ -204,20 +295,16 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		Throwable error = null;
 
 		if (!canceled) {
+			MessageBusManager.publishAnalysisScopeToEDT(project, getAnalyzedClassNames(projects));
+			final ReporterGroup reporterGroup = new ReporterGroup();
+			reporterGroup.startProgress(indicator);
 			try {
-				int numClassesOffset = 0;
-				for (final Map.Entry<Module, FindBugsProject> entry : projects.getProjects().entrySet()) {
-					final FindBugsProject findBugsProject = entry.getValue();
-					final Module module = entry.getKey();
-					indicator.setText("Start SpotBugs analysis of " + findBugsProject.getProjectName());
-					final Pair<SortedBugCollection, Reporter> data = executeImpl(indicator, module, findBugsProject, numClassesOffset);
-					final int numClasses = data.getSecond().getProjectStats().getNumClasses();
-					numClassesOffset += numClasses;
-					result.put(findBugsProject, data.getFirst());
-					if (data.getSecond().isCanceled()) {
-						canceled = true;
-						break;
-					}
+				if (isSingleEngine(projects)) {
+					canceled = executeSingleEngine(indicator, projects, reporterGroup, result);
+				} else if (isParallel(projects)) {
+					canceled = executeParallel(indicator, projects, reporterGroup, result);
+				} else {
+					canceled = executeSequential(indicator, projects, reporterGroup, result);
 				}
 			} catch (final InterruptedException e) {
 				Thread.currentThread().interrupt();
@@ -228,6 +315,8 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 					throw new RuntimeException(e);
 				}
 				error = e;
+			} finally {
+				reporterGroup.stopProgress();
 			}
 		}
 
@@ -238,13 +327,156 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		}
 	}
 
-	private Pair<SortedBugCollection, Reporter> executeImpl(
+	/**
+	 * Collected before the incremental cache replay, because replayed classes are reported again.
+	 *
+	 * @return top level class names of the configured class files, see {@link AnalysisScopeListener}
+	 */
+	@NotNull
+	private static Set<String> getAnalyzedClassNames(@NotNull final FindBugsProjects projects) {
+		final Set<String> ret = new HashSet<>();
+		for (final FindBugsProject findBugsProject : projects.getProjects().values()) {
+			for (final String className : ClassModuleIndex.getClassNames(findBugsProject)) {
+				ret.add(FindBugsResult.getTopLevelClassName(className));
+			}
+		}
+		return ret;
+	}
+
+	private boolean isSingleEngine(@NotNull final FindBugsProjects projects) {
+		return workspaceSettings.analyzeModulesInSingleEngine && isMultiModuleWithProjectSettings(projects);
+	}
+
+	private boolean isParallel(@NotNull final FindBugsProjects projects) {
+		return workspaceSettings.analyzeModulesInParallel && isMultiModuleWithProjectSettings(projects);
+	}
+
+	/**
+	 * Parallel and single engine analysis is only possible if all modules use the same settings, because
+	 * {@link PluginLoader} loads the SpotBugs plugins (global state) for the module settings.
+	 */
+	private static boolean isMultiModuleWithProjectSettings(@NotNull final FindBugsProjects projects) {
+		if (projects.getProjects().size() < 2) {
+			return false;
+		}
+		for (final Module module : projects.getProjects().keySet()) {
+			if (ModuleSettings.getInstance(module).overrideProjectSettings) {
+				LOGGER.info("Module " + module.getName() + " overrides project settings, analyze modules sequentially");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Analyzes the union of all modules with one engine and assigns the bugs back to their module.
+	 *
+	 * @return {@code true} if canceled
+	 */
+	private boolean executeSingleEngine(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final FindBugsProjects projects,
+			@NotNull final ReporterGroup reporterGroup,
+			@NotNull final FindBugsResult result
+	) throws Exception {
+
+		final Module module = projects.getProjects().keySet().iterator().next();
+		final FindBugsProject union = projects.createUnion(module);
+		final ClassModuleIndex classModuleIndex = ClassModuleIndex.create(module, projects.getProjects());
+		indicator.setText("Start SpotBugs analysis of " + union.getProjectName());
+		final Reporter reporter = createAnalysis(indicator, module, union, reporterGroup, classModuleIndex).execute();
+		classModuleIndex.putResults(result, reporter.getProjectStats());
+		return reporter.isCanceled();
+	}
+
+	/**
+	 * @return {@code true} if canceled
+	 */
+	private boolean executeSequential(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final FindBugsProjects projects,
+			@NotNull final ReporterGroup reporterGroup,
+			@NotNull final FindBugsResult result
+	) throws Exception {
+
+		for (final Map.Entry<Module, FindBugsProject> entry : projects.getProjects().entrySet()) {
+			final FindBugsProject findBugsProject = entry.getValue();
+			final Module module = entry.getKey();
+			indicator.setText("Start SpotBugs analysis of " + findBugsProject.getProjectName());
+			final Reporter reporter = createAnalysis(indicator, module, findBugsProject, reporterGroup, null).execute();
+			result.put(findBugsProject, reporter.getBugCollection());
+			if (reporter.isCanceled()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The engines are configured one after another by the calling thread, only {@link FindBugs2#execute()}
+	 * runs on the worker pool. All engines, including the shards of a module, share one pool and its heap
+	 * admission. The results are put into {@code result} in module order.
+	 *
+	 * @return {@code true} if canceled
+	 */
+	private boolean executeParallel(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final FindBugsProjects projects,
+			@NotNull final ReporterGroup reporterGroup,
+			@NotNull final FindBugsResult result
+	) throws Exception {
+
+		final ParallelAnalysisExecutor executor = new ParallelAnalysisExecutor(workspaceSettings.maxParallelAnalysis);
+		final Map<FindBugsProject, ModuleAnalysis> analyses = new LinkedHashMap<>();
+		final Map<FindBugsProject, List<Future<Void>>> futures = new HashMap<>();
+		boolean canceled = false;
+		try {
+			for (final Map.Entry<Module, FindBugsProject> entry : projects.getProjects().entrySet()) {
+				final FindBugsProject findBugsProject = entry.getValue();
+				final Module module = entry.getKey();
+				indicator.setText("Start SpotBugs analysis of " + findBugsProject.getProjectName());
+				final ModuleAnalysis analysis = createAnalysis(indicator, module, findBugsProject, reporterGroup, null);
+				analyses.put(findBugsProject, analysis);
+				futures.put(findBugsProject, analysis.submit(executor));
+				if (analysis.reporter.isCanceled()) {
+					canceled = true;
+					break;
+				}
+			}
+
+			/*
+			 * Wait for all submitted engines, even on cancel or error.
+			 * The reporters check for cancellation and stop their engine.
+			 */
+			Exception error = null;
+			for (final Map.Entry<FindBugsProject, ModuleAnalysis> entry : analyses.entrySet()) {
+				try {
+					final Reporter reporter = entry.getValue().complete(futures.get(entry.getKey()));
+					result.put(entry.getKey(), reporter.getBugCollection());
+					canceled |= reporter.isCanceled();
+				} catch (final Exception e) {
+					if (error == null) {
+						error = e;
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return canceled;
+	}
+
+	@NotNull
+	private ModuleAnalysis createAnalysis(
 			@NotNull final ProgressIndicator indicator,
 			@NotNull final Module module,
 			@NotNull final FindBugsProject findBugsProject,
-			final int analyzedClassCountOffset
-	) throws IOException, InterruptedException {
-
+			@NotNull final ReporterGroup reporterGroup,
+			@Nullable final ClassModuleIndex classModuleIndex
+	) {
 		final ModuleSettings moduleSettings = ModuleSettings.getInstance(module);
 		AbstractSettings settings = projectSettings;
 		String importFilePathKey = WorkspaceSettings.PROJECT_IMPORT_FILE_PATH_KEY;
@@ -297,6 +529,55 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 			}
 		}
 
+		final Reporter reporter = createReporter(indicator, module, findBugsProject, projectFilterSettings, userPrefs, reporterGroup);
+		reporter.setClassModuleIndex(classModuleIndex);
+
+		IncrementalAnalysisCache cache = null;
+		if (workspaceSettings.incrementalAnalysis && classModuleIndex == null) { // the cache is per module
+			final String fingerprint = IncrementalAnalysisCache.createFingerprint(findBugsProject, userPrefs, projectFilterSettings, detectorFactoryCollection);
+			cache = IncrementalAnalysisCache.open(project, module, findBugsProject, fingerprint);
+			final int replayed = cache.replay(findBugsProject, reporter);
+			LOGGER.debug("Reuse cached results of " + replayed + " classes of " + findBugsProject.getProjectName());
+		}
+
+		/*
+		 * Split after the cache replay, so only the classes which are really analyzed are distributed.
+		 * A single engine over several modules (classModuleIndex) is not split.
+		 */
+		final List<ShardAnalysis> shards = new ArrayList<>();
+		List<List<String>> shardFiles = Collections.emptyList();
+		if (workspaceSettings.analyzeModuleInShards && classModuleIndex == null) {
+			shardFiles = ModuleSharding.createShards(
+					findBugsProject.getFileList(),
+					ParallelAnalysisExecutor.getEffectiveConcurrency(workspaceSettings.maxParallelAnalysis),
+					workspaceSettings.keepWholeModuleForDetectors,
+					userPrefs,
+					detectorFactoryCollection
+			);
+		}
+		if (shardFiles.isEmpty()) {
+			shards.add(new ShardAnalysis(findBugsProject, reporter, createEngine(findBugsProject, reporter, userPrefs, detectorFactoryCollection)));
+		} else {
+			LOGGER.info("Split " + findBugsProject.getProjectName() + " into " + shardFiles.size() + " shards");
+			for (int i = 0; i < shardFiles.size(); i++) {
+				final FindBugsProject shardProject = findBugsProject.createShard(findBugsProject.getProjectName() + " #" + (i + 1), shardFiles.get(i));
+				final Reporter shardReporter = createReporter(indicator, module, shardProject, projectFilterSettings, userPrefs, reporterGroup);
+				shards.add(new ShardAnalysis(shardProject, shardReporter, createEngine(shardProject, shardReporter, userPrefs, detectorFactoryCollection)));
+			}
+		}
+
+		return new ModuleAnalysis(shards, reporter, reporterGroup, userPrefs, workspaceSettings.outOfProcessMaxHeapMb, workspaceSettings.maxParallelAnalysis, cache);
+	}
+
+	@NotNull
+	private Reporter createReporter(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final Module module,
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final ProjectFilterSettings projectFilterSettings,
+			@NotNull final UserPreferences userPrefs,
+			@NotNull final ReporterGroup reporterGroup
+	) {
 		final SortedBugCollection bugCollection = new SortedBugCollection(findBugsProject);
 
 		final Reporter reporter = new Reporter(
@@ -306,33 +587,46 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 				projectFilterSettings,
 				indicator,
 				_cancellingByUser,
-				analyzedClassCountOffset
+				reporterGroup
 		);
+		reporterGroup.add(reporter);
 
 		reporter.setPriorityThreshold(userPrefs.getUserDetectorThreshold());
 		reporter.setRankThreshold(projectFilterSettings.getMinRank());
+		reporter.setOutOfProcess(workspaceSettings.analyzeOutOfProcess);
+		return reporter;
+	}
 
-		final FindBugs2 engine = new FindBugs2();
-		{
-			engine.setNoClassOk(true);
-			engine.setMergeSimilarWarnings(false);
-			engine.setBugReporter(reporter);
-			engine.setProject(findBugsProject);
-			engine.setProgressCallback(reporter);
-			configureFilter(engine, userPrefs);
-			engine.setDetectorFactoryCollection(detectorFactoryCollection);
-			engine.setUserPreferences(userPrefs);
+	/**
+	 * @return {@code null} if the analysis runs in a worker process, see {@link AnalysisWorkers}
+	 */
+	@Nullable
+	private FindBugs2 createEngine(
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final Reporter reporter,
+			@NotNull final UserPreferences userPrefs,
+			@NotNull final DetectorFactoryCollection detectorFactoryCollection
+	) {
+		if (workspaceSettings.analyzeOutOfProcess) {
+			return null;
 		}
-
-		try {
-			engine.execute();
-		} finally {
-			engine.dispose();
+		final WarmAnalysisContexts.Context warmContext = findBugsProject.getWarmContext();
+		final FindBugs2 engine;
+		if (warmContext != null) {
+			engine = new WarmFindBugs2(warmContext);
+			engine.setProject(findBugsProject.createWithoutAuxClasspath());
+		} else {
+			engine = new FindBugs2();
+			engine.setProject(findBugsProject);
 		}
-
-		bugCollection.setTimestamp(System.currentTimeMillis());
-
-		return Pair.create(bugCollection, reporter);
+		engine.setNoClassOk(true);
+		engine.setMergeSimilarWarnings(false);
+		engine.setBugReporter(reporter);
+		engine.setProgressCallback(reporter);
+		configureFilter(engine, userPrefs);
+		engine.setDetectorFactoryCollection(detectorFactoryCollection);
+		engine.setUserPreferences(userPrefs);
+		return engine;
 	}
 
 	protected abstract void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer);
@@ -403,7 +697,52 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 
 	@Override
 	public final void analysisAborting() {
-		_cancellingByUser.set(true);
+		requestCancel();
+	}
+
+	/**
+	 * Cancels this analysis because a newer request replaces it.
+	 */
+	final void supersede() {
+		superseded = true;
+		requestCancel();
+	}
+
+	final boolean isSuperseded() {
+		return superseded;
+	}
+
+	final boolean isAnalyzing() {
+		return analyzing && stopped.getCount() > 0;
+	}
+
+	/**
+	 * Blocks until the analysis task of this starter stopped. Returns immediately if no task was queued,
+	 * a starter which is canceled before that does not queue a task anymore.
+	 *
+	 * @return {@code false} if the task is still running after {@code timeoutMs}
+	 */
+	final boolean awaitStopped(final long timeoutMs) throws InterruptedException {
+		return !analyzing || stopped.await(timeoutMs, TimeUnit.MILLISECONDS);
+	}
+
+	final boolean isModal() {
+		return startProgressModal;
+	}
+
+	/**
+	 * @return {@code true} for automatically triggered analysis which gives way to interactive requests
+	 */
+	boolean isBackground() {
+		return false;
+	}
+
+	/**
+	 * @return the analyzed files if known up front, used to detect requests which replace this one
+	 */
+	@Nullable
+	Set<VirtualFile> getFiles() {
+		return null;
 	}
 
 	private static void configureDetectors(
@@ -483,4 +822,189 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		}
 		return false;
 	}
+
+	/**
+	 * The configured engines for one module, one per shard.
+	 */
+	private static final class ModuleAnalysis {
+
+		@NotNull
+		private final List<ShardAnalysis> shards;
+
+		/**
+		 * The reporter of the module, the results of all shards are merged into its bug collection.
+		 */
+		@NotNull
+		private final Reporter reporter;
+
+		@NotNull
+		private final ReporterGroup reporterGroup;
+
+		@NotNull
+		private final UserPreferences userPrefs;
+
+		private final int outOfProcessMaxHeapMb;
+
+		private final int maxParallelAnalysis;
+
+		@Nullable
+		private final IncrementalAnalysisCache cache;
+
+		private ModuleAnalysis(
+				@NotNull final List<ShardAnalysis> shards,
+				@NotNull final Reporter reporter,
+				@NotNull final ReporterGroup reporterGroup,
+				@NotNull final UserPreferences userPrefs,
+				final int outOfProcessMaxHeapMb,
+				final int maxParallelAnalysis,
+				@Nullable final IncrementalAnalysisCache cache
+		) {
+			this.shards = shards;
+			this.reporter = reporter;
+			this.reporterGroup = reporterGroup;
+			this.userPrefs = userPrefs;
+			this.outOfProcessMaxHeapMb = outOfProcessMaxHeapMb;
+			this.maxParallelAnalysis = maxParallelAnalysis;
+			this.cache = cache;
+		}
+
+		/**
+		 * Runs a single shard on the calling thread, several shards on an own pool.
+		 */
+		@NotNull
+		Reporter execute() throws Exception {
+			if (shards.size() == 1) {
+				shards.get(0).execute(userPrefs, outOfProcessMaxHeapMb);
+				return complete(Collections.emptyList());
+			}
+			final ParallelAnalysisExecutor executor = new ParallelAnalysisExecutor(maxParallelAnalysis);
+			try {
+				return complete(submit(executor));
+			} finally {
+				executor.shutdown();
+			}
+		}
+
+		/**
+		 * Submits the shard engines. If canceled while waiting for admission, the remaining shards are disposed
+		 * and the module reporter is marked as canceled.
+		 *
+		 * @return the futures of the submitted shards, must be passed to {@link #complete(List)}
+		 */
+		@NotNull
+		List<Future<Void>> submit(@NotNull final ParallelAnalysisExecutor executor) throws InterruptedException {
+			final List<Future<Void>> ret = new ArrayList<>();
+			for (final ShardAnalysis shard : shards) {
+				final Future<Void> future = executor.submit(() -> {
+					shard.execute(userPrefs, outOfProcessMaxHeapMb);
+					return null;
+				}, reporter::isCancelRequested);
+				if (future == null) {
+					for (final ShardAnalysis notSubmitted : shards.subList(ret.size(), shards.size())) {
+						notSubmitted.dispose();
+					}
+					reporter.setCanceled();
+					break;
+				}
+				ret.add(future);
+			}
+			return ret;
+		}
+
+		/**
+		 * Waits for the submitted shards and merges their results in shard order. The merged collection is
+		 * sorted, so the result does not depend on which shard finished first.
+		 */
+		@NotNull
+		Reporter complete(@NotNull final List<Future<Void>> futures) throws Exception {
+			Exception error = null;
+			for (final Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (final ExecutionException e) {
+					if (error == null) {
+						error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+				}
+			}
+
+			final SortedBugCollection bugCollection = reporter.getBugCollection();
+			if (shards.size() > 1) {
+				for (final ShardAnalysis shard : shards) {
+					final SortedBugCollection shardBugCollection = shard.reporter.getBugCollection();
+					for (final BugInstance bug : shardBugCollection.getCollection()) {
+						bugCollection.add(bug);
+					}
+					for (final PackageStats packageStats : shardBugCollection.getProjectStats().getPackageStats()) {
+						for (final PackageStats.ClassStats classStats : packageStats.getClassStats()) {
+							bugCollection.getProjectStats().addClass(classStats.getName(), classStats.getSourceFile(), false, classStats.size());
+						}
+					}
+					reporterGroup.remove(shard.reporter); // its classes are counted by the module reporter now
+					if (shard.reporter.isCanceled()) {
+						reporter.setCanceled();
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+			bugCollection.setTimestamp(System.currentTimeMillis());
+
+			if (cache != null && !reporter.isCanceled()) {
+				cache.store(bugCollection);
+			}
+			return reporter;
+		}
+
+		void dispose() {
+			for (final ShardAnalysis shard : shards) {
+				shard.dispose();
+			}
+		}
+	}
+
+	/**
+	 * One engine over all or a part of the classes of a module.
+	 */
+	private static final class ShardAnalysis {
+
+		@NotNull
+		private final FindBugsProject findBugsProject;
+
+		@NotNull
+		private final Reporter reporter;
+
+		/**
+		 * {@code null} if the analysis runs in a worker process, see {@link AnalysisWorkers}.
+		 */
+		@Nullable
+		private final FindBugs2 engine;
+
+		private ShardAnalysis(@NotNull final FindBugsProject findBugsProject, @NotNull final Reporter reporter, @Nullable final FindBugs2 engine) {
+			this.findBugsProject = findBugsProject;
+			this.reporter = reporter;
+			this.engine = engine;
+		}
+
+		void execute(@NotNull final UserPreferences userPrefs, final int outOfProcessMaxHeapMb) throws IOException, InterruptedException {
+			if (engine == null) {
+				AnalysisWorkers.getInstance().analyze(findBugsProject, userPrefs, outOfProcessMaxHeapMb, reporter);
+			} else {
+				try {
+					engine.execute();
+				} catch (final Reporter.AnalysisCanceledException ignore) {
+					Thread.interrupted(); // clear the interrupt of Reporter#cancelFindBugs, the thread is reused
+				} finally {
+					engine.dispose();
+				}
+			}
+		}
+
+		void dispose() {
+			if (engine != null) {
+				engine.dispose();
+			}
+		}
+	}
 }
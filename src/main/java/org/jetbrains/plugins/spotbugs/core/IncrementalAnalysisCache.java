@@ -0,0 +1,414 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.Version;
+import edu.umd.cs.findbugs.config.ProjectFilterSettings;
+import edu.umd.cs.findbugs.config.UserPreferences;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.spotbugs.common.VersionManager;
+import org.jetbrains.plugins.spotbugs.common.util.WithPluginClassloader;
+import org.objectweb.asm.ClassReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Persistent per-class result cache of one module used by the incremental analysis
+ * (see {@link WorkspaceSettings#incrementalAnalysis}).
+ * <p>
+ * A class is identified by a key computed from the content of its class file, the content of the
+ * (directly) referenced classes found in the analysis classpath and the fingerprint of the
+ * detector/filter configuration. Classes with an unchanged key are removed from the
+ * {@link FindBugsProject} and their cached bugs are replayed, so SpotBugs only analyzes changed classes.
+ * <p>
+ * Bugs are cached by their primary class. The cache is best effort: if it can not be read
+ * the module is analyzed completely.
+ */
+final class IncrementalAnalysisCache {
+
+	private static final Logger LOGGER = Logger.getInstance(IncrementalAnalysisCache.class);
+
+	private static final String INDEX_FILE_NAME = "index.properties";
+	private static final String BUGS_FILE_NAME = "bugs.xml";
+	private static final String FINGERPRINT_KEY = "#fingerprint";
+	private static final String CLASS_FILE_SUFFIX = ".class";
+	private static final int CONSTANT_CLASS = 7;
+	private static final Object WRITE_LOCK = new Object();
+
+	@NotNull
+	private final File dir;
+
+	@NotNull
+	private final String fingerprint;
+
+	@NotNull
+	private final List<File> classpath;
+
+	/**
+	 * Key by dotted class name of the cached classes.
+	 */
+	@NotNull
+	private final Map<String, String> keyByClass;
+
+	@NotNull
+	private final Map<String, List<BugInstance>> bugsByClass;
+
+	/**
+	 * New key by dotted class name of the classes which are analyzed by SpotBugs in this run.
+	 */
+	@NotNull
+	private final Map<String, String> changed;
+
+	/**
+	 * Content hash by internal class name of the referenced classes, empty if the class is not part of the classpath.
+	 */
+	@NotNull
+	private final Map<String, String> hashByReferencedClass;
+
+	private IncrementalAnalysisCache(@NotNull final File dir, @NotNull final String fingerprint, @NotNull final List<File> classpath) {
+		this.dir = dir;
+		this.fingerprint = fingerprint;
+		this.classpath = classpath;
+		keyByClass = new HashMap<>();
+		bugsByClass = new HashMap<>();
+		changed = new HashMap<>();
+		hashByReferencedClass = new HashMap<>();
+	}
+
+	@NotNull
+	static IncrementalAnalysisCache open(
+			@NotNull final Project project,
+			@NotNull final Module module,
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final String fingerprint
+	) {
+		final File dir = new File(PathManager.getSystemPath(), "spotbugs/incremental/" + project.getLocationHash() + "/" + FileUtil.sanitizeFileName(module.getName()));
+		return open(dir, findBugsProject, fingerprint);
+	}
+
+	@NotNull
+	static IncrementalAnalysisCache open(
+			@NotNull final File dir,
+			@NotNull final edu.umd.cs.findbugs.Project findBugsProject,
+			@NotNull final String fingerprint
+	) {
+		final List<File> classpath = new ArrayList<>();
+		for (final String entry : findBugsProject.getAuxClasspathEntryList()) {
+			final File file = new File(entry);
+			if (file.isDirectory()) {
+				classpath.add(file);
+			}
+		}
+		final IncrementalAnalysisCache ret = new IncrementalAnalysisCache(dir, fingerprint, classpath);
+		try {
+			ret.read();
+		} catch (final Exception e) {
+			LOGGER.warn("Could not read SpotBugs result cache " + dir + ", analyze all classes", e);
+			ret.keyByClass.clear();
+			ret.bugsByClass.clear();
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes all classes with a cached result from {@code findBugsProject} and replays their bugs.
+	 *
+	 * @return number of replayed classes
+	 */
+	int replay(@NotNull final FindBugsProject findBugsProject, @NotNull final Reporter reporter) {
+		return replay(findBugsProject, reporter::replayClass);
+	}
+
+	/**
+	 * @param replayClass receives the dotted name and the cached bugs of every replayed class
+	 */
+	int replay(@NotNull final edu.umd.cs.findbugs.Project findBugsProject, @NotNull final BiConsumer<String, List<BugInstance>> replayClass) {
+		int replayed = 0;
+		final List<String> files = new ArrayList<>(findBugsProject.getFileList());
+		for (int i = files.size() - 1; i >= 0; i--) {
+			final String file = files.get(i);
+			if (!file.endsWith(CLASS_FILE_SUFFIX)) {
+				continue;
+			}
+			final byte[] bytes;
+			try {
+				bytes = Files.readAllBytes(new File(file).toPath());
+			} catch (final IOException e) {
+				LOGGER.debug("Could not read " + file, e);
+				continue;
+			}
+			final ClassReader reader = new ClassReader(bytes);
+			final String className = reader.getClassName().replace('/', '.');
+			final String key = computeKey(bytes, reader);
+			if (key.equals(keyByClass.get(className))) {
+				findBugsProject.removeFile(i);
+				final List<BugInstance> bugs = bugsByClass.get(className);
+				replayClass.accept(className, bugs != null ? bugs : new ArrayList<>());
+				replayed++;
+			} else {
+				changed.put(className, key);
+			}
+		}
+		return replayed;
+	}
+
+	/**
+	 * Stores the bugs of all classes analyzed by SpotBugs in this run.
+	 */
+	void store(@NotNull final SortedBugCollection bugCollection) {
+		if (changed.isEmpty()) {
+			return;
+		}
+		for (final String className : changed.keySet()) {
+			bugsByClass.remove(className);
+		}
+		for (final BugInstance bug : bugCollection.getCollection()) {
+			final String className = bug.getPrimaryClass().getClassName();
+			if (changed.containsKey(className)) {
+				bugsByClass.computeIfAbsent(className, k -> new ArrayList<>()).add(bug);
+			}
+		}
+		keyByClass.putAll(changed);
+		changed.clear();
+		try {
+			write();
+		} catch (final IOException e) {
+			LOGGER.warn("Could not write SpotBugs result cache " + dir, e);
+		}
+	}
+
+	private void read() throws Exception {
+		final File indexFile = new File(dir, INDEX_FILE_NAME);
+		final File bugsFile = new File(dir, BUGS_FILE_NAME);
+		if (!indexFile.isFile() || !bugsFile.isFile()) {
+			return;
+		}
+		final Properties index = new Properties();
+		try (InputStream in = new FileInputStream(indexFile)) {
+			index.load(in);
+		}
+		if (!fingerprint.equals(index.getProperty(FINGERPRINT_KEY))) {
+			LOGGER.debug("SpotBugs configuration changed, discard result cache " + dir);
+			return;
+		}
+		index.remove(FINGERPRINT_KEY);
+		for (final String className : index.stringPropertyNames()) {
+			keyByClass.put(className, index.getProperty(className));
+		}
+
+		final SortedBugCollection bugCollection = new SortedBugCollection(new edu.umd.cs.findbugs.Project());
+		WithPluginClassloader.compute(() -> {
+			bugCollection.readXML(bugsFile);
+			return null;
+		});
+		for (final BugInstance bug : bugCollection.getCollection()) {
+			bugsByClass.computeIfAbsent(bug.getPrimaryClass().getClassName(), k -> new ArrayList<>()).add(bug);
+		}
+	}
+
+	private void write() throws IOException {
+		final Properties index = new Properties();
+		index.putAll(keyByClass);
+		index.setProperty(FINGERPRINT_KEY, fingerprint);
+
+		final SortedBugCollection bugCollection = new SortedBugCollection(new edu.umd.cs.findbugs.Project());
+		for (final List<BugInstance> bugs : bugsByClass.values()) {
+			bugCollection.addAll(bugs, false);
+		}
+
+		synchronized (WRITE_LOCK) {
+			FileUtil.createDirectory(dir);
+			bugCollection.writeXML(new File(dir, BUGS_FILE_NAME));
+			try (OutputStream out = new FileOutputStream(new File(dir, INDEX_FILE_NAME))) {
+				index.store(out, null);
+			}
+		}
+	}
+
+	@NotNull
+	private String computeKey(@NotNull final byte[] bytes, @NotNull final ClassReader reader) {
+		final MessageDigest digest = newDigest();
+		digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+		digest.update(bytes);
+		for (final String referencedClass : getReferencedClasses(reader)) {
+			final String hash = getReferencedClassHash(referencedClass);
+			if (!hash.isEmpty()) {
+				digest.update(referencedClass.getBytes(StandardCharsets.UTF_8));
+				digest.update(hash.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	@NotNull
+	private String getReferencedClassHash(@NotNull final String internalName) {
+		String ret = hashByReferencedClass.get(internalName);
+		if (ret == null) {
+			ret = "";
+			if (!internalName.startsWith("java/")) {
+				for (final File root : classpath) {
+					final File file = new File(root, internalName + CLASS_FILE_SUFFIX);
+					if (file.isFile()) {
+						try {
+							ret = HexFormat.of().formatHex(newDigest().digest(Files.readAllBytes(file.toPath())));
+						} catch (final IOException e) {
+							LOGGER.debug("Could not read " + file, e);
+						}
+						break;
+					}
+				}
+			}
+			hashByReferencedClass.put(internalName, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return sorted internal names of all classes referenced by the constant pool (incl. super class and interfaces)
+	 */
+	@NotNull
+	static Set<String> getReferencedClasses(@NotNull final ClassReader reader) {
+		final Set<String> ret = new TreeSet<>();
+		final char[] buffer = new char[reader.getMaxStringLength()];
+		for (int i = 1; i < reader.getItemCount(); i++) {
+			final int offset = reader.getItem(i);
+			if (offset > 0 && reader.readByte(offset - 1) == CONSTANT_CLASS) {
+				String name = reader.readUTF8(offset, buffer);
+				if (name.startsWith("[")) { // array type descriptor
+					name = name.substring(name.lastIndexOf('[') + 1);
+					if (!name.startsWith("L")) {
+						continue; // primitive
+					}
+					name = name.substring(1, name.length() - 1);
+				}
+				ret.add(name);
+			}
+		}
+		ret.remove(reader.getClassName());
+		return ret;
+	}
+
+	/**
+	 * The fingerprint changes whenever the SpotBugs version, plugins, detectors, filters or analysis classpath change.
+	 * Classes of classpath directories are hashed per referenced class (see {@link #computeKey}),
+	 * archives are compared by length and modification time.
+	 */
+	@NotNull
+	static String createFingerprint(
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final UserPreferences userPrefs,
+			@NotNull final ProjectFilterSettings projectFilterSettings,
+			@NotNull final DetectorFactoryCollection detectorFactoryCollection
+	) {
+		final StringBuilder ret = new StringBuilder()
+				.append(VersionManager.getFullVersion()).append('\n')
+				.append(Version.VERSION_STRING).append('\n')
+				.append(userPrefs.getEffort()).append('\n')
+				.append(userPrefs.getUserDetectorThreshold()).append('\n')
+				.append(projectFilterSettings.toEncodedString()).append('\n');
+
+		final Map<String, String> plugins = new TreeMap<>();
+		for (final Plugin plugin : Plugin.getAllPlugins()) {
+			plugins.put(plugin.getPluginId(), plugin.getVersion() + ":" + findBugsProject.getPluginStatus(plugin));
+		}
+		ret.append(plugins).append('\n');
+
+		final Map<String, Boolean> detectors = new TreeMap<>();
+		for (final DetectorFactory factory : detectorFactoryCollection.getFactories()) {
+			detectors.put(factory.getFullName(), userPrefs.isDetectorEnabled(factory));
+		}
+		ret.append(detectors).append('\n');
+
+		appendFilterFiles(ret, userPrefs.getIncludeFilterFiles());
+		appendFilterFiles(ret, userPrefs.getExcludeFilterFiles());
+		appendFilterFiles(ret, userPrefs.getExcludeBugsFiles());
+		appendClasspath(ret, findBugsProject.getAuxClasspathEntryList());
+
+		return HexFormat.of().formatHex(newDigest().digest(ret.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	static void appendClasspath(@NotNull final StringBuilder fingerprint, @NotNull final List<String> entries) {
+		for (final String entry : new TreeSet<>(entries)) {
+			fingerprint.append(entry);
+			final File file = new File(entry);
+			if (file.isFile()) {
+				fingerprint.append('=').append(file.length()).append(':').append(file.lastModified());
+			}
+			fingerprint.append('\n');
+		}
+	}
+
+	private static void appendFilterFiles(@NotNull final StringBuilder fingerprint, @Nullable final Map<String, Boolean> files) {
+		if (files == null) {
+			return;
+		}
+		for (final Map.Entry<String, Boolean> entry : new TreeMap<>(files).entrySet()) {
+			if (entry.getValue()) {
+				fingerprint.append(entry.getKey()).append('=');
+				final File file = new File(entry.getKey());
+				try {
+					fingerprint.append(HexFormat.of().formatHex(newDigest().digest(Files.readAllBytes(file.toPath()))));
+				} catch (final IOException e) {
+					fingerprint.append(file.lastModified());
+				}
+				fingerprint.append('\n');
+			}
+		}
+	}
+
+	@NotNull
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.config.UserPreferences;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits the application classes of one module into shards which are analyzed by concurrent engines.
+ * All shards share the aux classpath of the module, so each engine can still resolve the classes of the other shards.
+ */
+final class ModuleSharding {
+
+	private static final Logger LOGGER = Logger.getInstance(ModuleSharding.class);
+
+	private static final int DEFAULT_MIN_CLASSES_PER_SHARD = 1000;
+	private static final int MIN_CLASSES_PER_SHARD = Math.max(1, StringUtil.parseInt(System.getProperty("idea.spotbugs.shard.minClasses", String.valueOf(DEFAULT_MIN_CLASSES_PER_SHARD)), DEFAULT_MIN_CLASSES_PER_SHARD));
+
+	/**
+	 * Detectors which collect facts over all application classes and report at the end of the analysis.
+	 * An engine of one shard only sees a part of the module, which causes false positives (f. e. a field
+	 * read only by a class of another shard is reported as unread).
+	 */
+	private static final Set<String> WHOLE_MODULE_DETECTORS = new HashSet<>(Arrays.asList(
+			"UnreadFields",
+			"Naming",
+			"MutableStaticFields",
+			"InitializationChain",
+			"FindHEmismatch"
+	));
+
+	private ModuleSharding() {
+	}
+
+	/**
+	 * @param files            the application classes of the module
+	 * @param maxShards        upper limit, usually the number of concurrent engines
+	 * @param keepWholeModule  do not split if a detector needs the whole module, see {@link WorkspaceSettings#keepWholeModuleForDetectors}
+	 * @return the files of each shard, or an empty list if the module should not be split
+	 */
+	@NotNull
+	static List<List<String>> createShards(
+			@NotNull final List<String> files,
+			final int maxShards,
+			final boolean keepWholeModule,
+			@NotNull final UserPreferences userPrefs,
+			@NotNull final DetectorFactoryCollection detectorFactoryCollection
+	) {
+		final int shardCount = Math.min(maxShards, files.size() / MIN_CLASSES_PER_SHARD);
+		if (shardCount < 2) {
+			return Collections.emptyList();
+		}
+		if (keepWholeModule) {
+			final String detector = findWholeModuleDetector(userPrefs, detectorFactoryCollection);
+			if (detector != null) {
+				LOGGER.info("Detector " + detector + " needs the whole module, do not split module");
+				return Collections.emptyList();
+			}
+		}
+		return split(files, shardCount);
+	}
+
+	/**
+	 * Sorts the files and splits them in contiguous ranges, so classes of the same package
+	 * end up in the same shard and the split does not depend on the order the files were added.
+	 */
+	@NotNull
+	static List<List<String>> split(@NotNull final List<String> files, final int shardCount) {
+		final List<String> sorted = new ArrayList<>(files);
+		Collections.sort(sorted);
+		final List<List<String>> ret = new ArrayList<>(shardCount);
+		for (int i = 0; i < shardCount; i++) {
+			final int from = (int) ((long) sorted.size() * i / shardCount);
+			final int to = (int) ((long) sorted.size() * (i + 1) / shardCount);
+			ret.add(new ArrayList<>(sorted.subList(from, to)));
+		}
+		return ret;
+	}
+
+	@Nullable
+	private static String findWholeModuleDetector(
+			@NotNull final UserPreferences userPrefs,
+			@NotNull final DetectorFactoryCollection detectorFactoryCollection
+	) {
+		for (final String shortName : WHOLE_MODULE_DETECTORS) {
+			final DetectorFactory detectorFactory = detectorFactoryCollection.getFactory(shortName);
+			if (detectorFactory != null && userPrefs.isDetectorEnabled(detectorFactory)) {
+				return shortName;
+			}
+		}
+		return null;
+	}
+}
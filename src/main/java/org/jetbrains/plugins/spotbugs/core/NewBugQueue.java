@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.spotbugs.common.EventDispatchThreadHelper;
+import org.jetbrains.plugins.spotbugs.messages.MessageBusManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Transfers new bugs to the EDT and publishes them in batches by
+ * {@link MessageBusManager#publishNewBugs(Project, List, int)}.
+ * The batch size adapts to the time the subscribers need, so one EDT event stays within a frame budget.
+ */
+public final class NewBugQueue {
+
+	private static final int DEFAULT_FRAME_BUDGET_MS = 16;
+	private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(StringUtil.parseInt(System.getProperty("idea.spotbugs.newBugs.frameBudgetMillis", String.valueOf(DEFAULT_FRAME_BUDGET_MS)), DEFAULT_FRAME_BUDGET_MS));
+	private static final int MIN_BATCH_SIZE = 16;
+	private static final int MAX_BATCH_SIZE = 4096;
+
+	@NotNull
+	private final Project project;
+
+	@NotNull
+	private final BooleanSupplier expired;
+
+	@NotNull
+	private final Queue<Bug> queue;
+
+	@NotNull
+	private final AtomicBoolean scheduled;
+
+	private volatile int analyzedClassCount;
+
+	/**
+	 * EDT thread confinement.
+	 */
+	private int batchSize;
+
+	/**
+	 * @param expired if {@code true}, queued bugs are dropped (project disposed or analysis canceled)
+	 */
+	public NewBugQueue(@NotNull final Project project, @NotNull final BooleanSupplier expired) {
+		this.project = project;
+		this.expired = expired;
+		queue = new ConcurrentLinkedQueue<>();
+		scheduled = new AtomicBoolean();
+		batchSize = MIN_BATCH_SIZE;
+	}
+
+	public void offer(@NotNull final Bug bug, final int analyzedClassCount) {
+		queue.offer(bug);
+		this.analyzedClassCount = analyzedClassCount;
+		schedule();
+	}
+
+	/**
+	 * Publishes all queued bugs now, without frame budget.
+	 */
+	public void drain() {
+		EventDispatchThreadHelper.checkEDT();
+		while (!queue.isEmpty() && !isExpired()) {
+			publish(MAX_BATCH_SIZE);
+		}
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			EventDispatchThreadHelper.invokeLater(this::processBatch);
+		}
+	}
+
+	private void processBatch() {
+		scheduled.set(false);
+		if (isExpired()) {
+			queue.clear();
+			return;
+		}
+		final long start = System.nanoTime();
+		final int size = publish(batchSize);
+		final long elapsed = System.nanoTime() - start;
+		if (size == batchSize && elapsed < FRAME_BUDGET_NANOS / 2) {
+			batchSize = Math.min(batchSize * 2, MAX_BATCH_SIZE);
+		} else if (elapsed > FRAME_BUDGET_NANOS) {
+			batchSize = Math.max(batchSize / 2, MIN_BATCH_SIZE);
+		}
+		if (!queue.isEmpty()) {
+			schedule(); // let the EDT paint before the next batch
+		}
+	}
+
+	private int publish(final int maxSize) {
+		final List<Bug> batch = new ArrayList<>(Math.min(maxSize, queue.size()));
+		Bug bug;
+		while (batch.size() < maxSize && (bug = queue.poll()) != null) {
+			batch.add(bug);
+		}
+		if (!batch.isEmpty()) {
+			MessageBusManager.publishNewBugs(project, batch, analyzedClassCount);
+		}
+		return batch.size();
+	}
+
+	private boolean isExpired() {
+		return project.isDisposed() || expired.getAsBoolean();
+	}
+}
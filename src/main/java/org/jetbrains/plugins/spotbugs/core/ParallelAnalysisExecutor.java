@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.spotbugs.common.util.WithPluginClassloader;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs several SpotBugs engines at once on a bounded worker pool.
+ * <p>
+ * The number of concurrently running engines is limited by the configured concurrency limit
+ * ({@link WorkspaceSettings#maxParallelAnalysis}) and by the free heap: each engine is expected to need
+ * about {@code idea.spotbugs.parallel.heapPerEngineMb} MB. A new engine is only admitted if there
+ * is enough free heap left or if no other engine is running (so the analysis always makes progress).
+ */
+final class ParallelAnalysisExecutor {
+
+	private static final Logger LOGGER = Logger.getInstance(ParallelAnalysisExecutor.class);
+
+	private static final int DEFAULT_HEAP_PER_ENGINE_MB = 512;
+	private static final long HEAP_PER_ENGINE = 1024L * 1024L * StringUtil.parseInt(System.getProperty("idea.spotbugs.parallel.heapPerEngineMb", String.valueOf(DEFAULT_HEAP_PER_ENGINE_MB)), DEFAULT_HEAP_PER_ENGINE_MB);
+	private static final long ADMISSION_POLL_MS = 200;
+
+	@NotNull
+	private final ExecutorService executor;
+
+	private final int concurrency;
+
+	private final Object lock = new Object();
+	private int running; // @GuardedBy lock
+
+	ParallelAnalysisExecutor(final int concurrencyLimit) {
+		concurrency = getEffectiveConcurrency(concurrencyLimit);
+		executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("SpotBugs Analysis", concurrency);
+		LOGGER.info("Parallel SpotBugs analysis with up to " + concurrency + " engines");
+	}
+
+	int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Waits until another engine is admitted and submits the task.
+	 *
+	 * @param task     the engine execution, runs with the plugin class loader as context class loader
+	 * @param canceled polled while waiting for admission
+	 * @return {@code null} if canceled while waiting for admission
+	 */
+	<T> Future<T> submit(@NotNull final Callable<T> task, @NotNull final BooleanSupplier canceled) throws InterruptedException {
+		if (!acquire(canceled)) {
+			return null;
+		}
+		try {
+			return executor.submit(() -> {
+				try {
+					return WithPluginClassloader.compute(task::call);
+				} finally {
+					release();
+				}
+			});
+		} catch (final RuntimeException e) {
+			release();
+			throw e;
+		}
+	}
+
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	private boolean acquire(@NotNull final BooleanSupplier canceled) throws InterruptedException {
+		synchronized (lock) {
+			while (running > 0 && (running >= concurrency || getAvailableHeap() < HEAP_PER_ENGINE)) {
+				if (canceled.getAsBoolean()) {
+					return false;
+				}
+				lock.wait(ADMISSION_POLL_MS);
+			}
+			if (canceled.getAsBoolean()) {
+				return false;
+			}
+			running++;
+			return true;
+		}
+	}
+
+	private void release() {
+		synchronized (lock) {
+			running--;
+			lock.notifyAll();
+		}
+	}
+
+	static int getEffectiveConcurrency(final int concurrencyLimit) {
+		final int limit = concurrencyLimit > 0 ? concurrencyLimit : Runtime.getRuntime().availableProcessors();
+		final long heapLimit = Math.max(1, Runtime.getRuntime().maxMemory() / HEAP_PER_ENGINE);
+		return (int) Math.max(1, Math.min(limit, heapLimit));
+	}
+
+	private static long getAvailableHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+	}
+}
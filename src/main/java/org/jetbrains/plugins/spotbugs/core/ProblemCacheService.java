@@ -19,24 +19,217 @@
  */
 package org.jetbrains.plugins.spotbugs.core;
 
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.spotbugs.common.EventDispatchThreadHelper;
 import org.jetbrains.plugins.spotbugs.common.ExtendedProblemDescriptor;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class ProblemCacheService {
+/**
+ * The problems of the last analysis per file, for the editor annotations and gutter icons.
+ * <p>
+ * The cache is keyed by {@link VirtualFile} and the problems hold no PSI, so the PSI of files with problems
+ * is not kept alive. The elements of the problems are only resolved for files open in an editor.
+ */
+public class ProblemCacheService implements Disposable {
+
+    /**
+     * Resolves the anchors of several files in parallel, see {@link #resolveAnchors(VirtualFile)}.
+     */
+    private static final Executor ANCHOR_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+            "SpotBugs Problem Anchors", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    @NotNull
+    private final Project project;
+
+    private final ConcurrentMap<VirtualFile, List<ExtendedProblemDescriptor>> problems;
+
+    private final ConcurrentMap<VirtualFile, ProblemIndex> indexes;
 
-    private final ConcurrentMap<PsiFile, List<ExtendedProblemDescriptor>> problems;
+    /**
+     * Per file, incremented whenever anchors of the file were resolved, invalidates the {@link ProblemIndex} of the file.
+     */
+    private final ConcurrentMap<VirtualFile, AtomicLong> anchorModificationCounts;
 
-    public ProblemCacheService() {
+    /**
+     * The bugs per file as of the last {@link #restartHighlighting()}, only accessed by the EDT.
+     */
+    @NotNull
+    private Map<VirtualFile, Set<Bug>> highlightedBugs;
+
+    public ProblemCacheService(@NotNull final Project project) {
+      this.project = project;
       problems = new ConcurrentHashMap<>();
+      indexes = new ConcurrentHashMap<>();
+      anchorModificationCounts = new ConcurrentHashMap<>();
+      highlightedBugs = new HashMap<>();
+      project.getMessageBus().connect(this).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerListener() {
+          @Override
+          public void fileOpened(@NotNull final FileEditorManager source, @NotNull final VirtualFile file) {
+              resolveAnchors(file);
+          }
+
+          @Override
+          public void fileClosed(@NotNull final FileEditorManager source, @NotNull final VirtualFile file) {
+              indexes.remove(file);
+          }
+      });
     }
 
     @NotNull
-    public Map<PsiFile, List<ExtendedProblemDescriptor>> getProblems() {
+    public Map<VirtualFile, List<ExtendedProblemDescriptor>> getProblems() {
         return problems;
     }
+
+    /**
+     * Problems whose anchor is not resolved yet by {@link #resolveAnchors(VirtualFile)}, f. e. highlighted right after
+     * the analysis, are resolved on demand when the index is created.
+     *
+     * @return the offset index of the problems of {@code psiFile}, {@code null} if the file has no problems
+     */
+    @Nullable
+    public ProblemIndex getIndex(@NotNull final PsiFile psiFile) {
+        final VirtualFile virtualFile = psiFile.getVirtualFile();
+        final List<ExtendedProblemDescriptor> descriptors = virtualFile != null ? problems.get(virtualFile) : null;
+        if (descriptors == null) {
+            if (!indexes.isEmpty()) {
+                indexes.keySet().retainAll(problems.keySet());
+            }
+            if (!anchorModificationCounts.isEmpty()) {
+                anchorModificationCounts.keySet().retainAll(problems.keySet());
+            }
+            return null;
+        }
+        final long modificationStamp = psiFile.getModificationStamp();
+        ProblemIndex ret = indexes.get(virtualFile);
+        if (ret == null || !ret.isComplete() || !ret.isUpToDate(descriptors, modificationStamp, getAnchorModificationCount(virtualFile))) {
+            resolveAnchors(virtualFile, psiFile, new ArrayList<>(descriptors));
+            ret = ProblemIndex.create(descriptors, modificationStamp, getAnchorModificationCount(virtualFile));
+            indexes.put(virtualFile, ret);
+        }
+        return ret;
+    }
+
+    private long getAnchorModificationCount(@NotNull final VirtualFile file) {
+        final AtomicLong ret = anchorModificationCounts.get(file);
+        return ret != null ? ret.get() : 0;
+    }
+
+    /**
+     * Restarts the highlighting of the open files which gained or lost problems since the last call,
+     * instead of all open editors.
+     * The problems of such a file are resolved first in the background, see {@link #resolveAnchors(VirtualFile)},
+     * and its highlighting is restarted once they are resolved. Only files whose problems are all resolved,
+     * f. e. the ones which lost all problems, are restarted immediately.
+     */
+    public void restartHighlighting() {
+        EventDispatchThreadHelper.checkEDT();
+        final Map<VirtualFile, Set<Bug>> bugs = new HashMap<>();
+        for (final Map.Entry<VirtualFile, List<ExtendedProblemDescriptor>> entry : problems.entrySet()) {
+            final Set<Bug> fileBugs = new HashSet<>();
+            for (final ExtendedProblemDescriptor descriptor : entry.getValue()) {
+                fileBugs.add(descriptor.getBug());
+            }
+            if (!fileBugs.isEmpty()) {
+                bugs.put(entry.getKey(), fileBugs);
+            }
+        }
+        final Set<VirtualFile> changed = new HashSet<>(highlightedBugs.keySet());
+        changed.addAll(bugs.keySet());
+        changed.removeIf(file -> Objects.equals(highlightedBugs.get(file), bugs.get(file)));
+        highlightedBugs = bugs;
+
+        final FileEditorManager fileEditorManager = FileEditorManager.getInstance(project);
+        final PsiManager psiManager = PsiManager.getInstance(project);
+        for (final VirtualFile file : changed) {
+            if (file.isValid() && fileEditorManager.isFileOpen(file) && !resolveAnchors(file)) {
+                final PsiFile psiFile = psiManager.findFile(file);
+                if (psiFile != null) {
+                    DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the elements of the problems of a file in the background, so highlighting passes normally only read
+     * resolved anchors, see {@link #getIndex(PsiFile)}. Called for the open files whose problems changed and when a
+     * file is opened.
+     * Each file is resolved by its own cancellable read action in smart mode, which is restarted by a write action
+     * and then continues with the problems not resolved yet. A new call supersedes the running resolution of a file.
+     * Highlighting of a file is restarted once its problems are resolved.
+     *
+     * @return {@code true} if a resolution was started, {@code false} if the file has no unresolved problems
+     */
+    private boolean resolveAnchors(@NotNull final VirtualFile file) {
+        final List<ExtendedProblemDescriptor> problemList = problems.get(file);
+        if (problemList == null) {
+            return false;
+        }
+        final List<ExtendedProblemDescriptor> descriptors = new ArrayList<>(problemList);
+        if (descriptors.stream().allMatch(ExtendedProblemDescriptor::isResolved)) {
+            return false;
+        }
+        ReadAction.nonBlocking(() -> resolveAnchors(file, descriptors))
+                .inSmartMode(project)
+                .expireWith(this)
+                .coalesceBy(this, file)
+                .finishOnUiThread(ModalityState.defaultModalityState(), psiFile -> {
+                    if (psiFile != null) {
+                        DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
+                    }
+                })
+                .submit(ANCHOR_EXECUTOR);
+        return true;
+    }
+
+    @Nullable
+    private PsiFile resolveAnchors(@NotNull final VirtualFile file, @NotNull final List<ExtendedProblemDescriptor> descriptors) {
+        final PsiFile psiFile = file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+        if (psiFile != null) {
+            resolveAnchors(file, psiFile, descriptors);
+        }
+        return psiFile;
+    }
+
+    /**
+     * Increments the modification count of the file once, also if cancelled after some anchors were resolved.
+     */
+    private void resolveAnchors(@NotNull final VirtualFile file, @NotNull final PsiFile psiFile, @NotNull final List<ExtendedProblemDescriptor> descriptors) {
+        final Document document = PsiDocumentManager.getInstance(project).getDocument(psiFile);
+        boolean modified = false;
+        try {
+            for (final ExtendedProblemDescriptor descriptor : descriptors) {
+                ProgressManager.checkCanceled();
+                modified |= descriptor.resolve(document);
+            }
+        } finally {
+            if (modified) {
+                anchorModificationCounts.computeIfAbsent(file, k -> new AtomicLong()).incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+    }
 }
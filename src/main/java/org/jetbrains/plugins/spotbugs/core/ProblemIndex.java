@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.spotbugs.common.ExtendedProblemDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The problems of one file ordered by the start offset of their resolved {@link PsiElement},
+ * so the editor annotator and line marker provider find the problems of an element by binary search.
+ * <p>
+ * Only problems with a resolved element are indexed, the elements are resolved in the background,
+ * see {@link ProblemCacheService#restartHighlighting()}, or on demand if the index is not {@link #isComplete() complete}.
+ * An index is immutable, {@link ProblemCacheService#getIndex(com.intellij.psi.PsiFile)} creates a new one
+ * if the problems of the file, the file itself or the resolved elements change.
+ */
+public final class ProblemIndex {
+
+	@NotNull
+	private final List<ExtendedProblemDescriptor> source;
+
+	private final int sourceSize;
+
+	private final long modificationStamp;
+
+	private final long anchorModificationCount;
+
+	private final boolean complete;
+
+	@NotNull
+	private final int[] startOffsets;
+
+	@NotNull
+	private final ExtendedProblemDescriptor[] descriptors;
+
+	private ProblemIndex(@NotNull final List<ExtendedProblemDescriptor> source, final int sourceSize, final long modificationStamp, final long anchorModificationCount, final boolean complete, @NotNull final int[] startOffsets, @NotNull final ExtendedProblemDescriptor[] descriptors) {
+		this.source = source;
+		this.sourceSize = sourceSize;
+		this.modificationStamp = modificationStamp;
+		this.anchorModificationCount = anchorModificationCount;
+		this.complete = complete;
+		this.startOffsets = startOffsets;
+		this.descriptors = descriptors;
+	}
+
+	@NotNull
+	static ProblemIndex create(@NotNull final List<ExtendedProblemDescriptor> source, final long modificationStamp, final long anchorModificationCount) {
+		// the list is modified by the EDT, see GroupTreeModel
+		final List<ExtendedProblemDescriptor> copy = new ArrayList<>(source);
+		final List<Entry> entries = new ArrayList<>(copy.size());
+		boolean complete = true;
+		for (final ExtendedProblemDescriptor descriptor : copy) {
+			complete &= descriptor.isResolved();
+			final PsiElement psiElement = descriptor.getResolvedPsiElement();
+			if (psiElement != null && psiElement.isValid()) {
+				final TextRange textRange = psiElement.getTextRange();
+				if (textRange != null) {
+					entries.add(new Entry(textRange.getStartOffset(), descriptor));
+				}
+			}
+		}
+		entries.sort(Comparator.comparingInt(entry -> entry.startOffset)); // stable, keeps the order of the problems per offset
+		final int[] startOffsets = new int[entries.size()];
+		final ExtendedProblemDescriptor[] descriptors = new ExtendedProblemDescriptor[entries.size()];
+		for (int i = 0; i < startOffsets.length; i++) {
+			startOffsets[i] = entries.get(i).startOffset;
+			descriptors[i] = entries.get(i).descriptor;
+		}
+		return new ProblemIndex(source, copy.size(), modificationStamp, anchorModificationCount, complete, startOffsets, descriptors);
+	}
+
+	boolean isUpToDate(@NotNull final List<ExtendedProblemDescriptor> source, final long modificationStamp, final long anchorModificationCount) {
+		// problems are only added or removed, never replaced
+		return this.source == source && sourceSize == source.size() && this.modificationStamp == modificationStamp
+				&& this.anchorModificationCount == anchorModificationCount;
+	}
+
+	/**
+	 * @return {@code false} if problems of the index were not resolved yet when it was created
+	 */
+	boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return the problems whose element starts at {@code startOffset}, in the order of the problem list
+	 */
+	@NotNull
+	public List<ExtendedProblemDescriptor> getStartingAt(final int startOffset) {
+		int low = 0;
+		int high = startOffsets.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (startOffsets[mid] < startOffset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		if (low == startOffsets.length || startOffsets[low] != startOffset) {
+			return Collections.emptyList();
+		}
+		final List<ExtendedProblemDescriptor> ret = new ArrayList<>(1);
+		for (int i = low; i < startOffsets.length && startOffsets[i] == startOffset; i++) {
+			ret.add(descriptors[i]);
+		}
+		return ret;
+	}
+
+	private static final class Entry {
+		private final int startOffset;
+
+		@NotNull
+		private final ExtendedProblemDescriptor descriptor;
+
+		private Entry(final int startOffset, @NotNull final ExtendedProblemDescriptor descriptor) {
+			this.startOffset = startOffset;
+			this.descriptor = descriptor;
+		}
+	}
+}
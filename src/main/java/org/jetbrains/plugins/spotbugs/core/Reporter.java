@@ -23,9 +23,6 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Condition;
-import com.intellij.util.Processor;
-import com.intellij.util.containers.TransferToEDTQueue;
 import edu.umd.cs.findbugs.AbstractBugReporter;
 import edu.umd.cs.findbugs.AnalysisError;
 import edu.umd.cs.findbugs.BugInstance;
@@ -36,8 +33,8 @@ import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.config.ProjectFilterSettings;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.spotbugs.common.EventDispatchThreadHelper;
-import org.jetbrains.plugins.spotbugs.messages.MessageBusManager;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -47,16 +44,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 
 	private static final Logger LOGGER = Logger.getInstance(Reporter.class.getName());
 	private static final String ANALYZING_CLASSES_i18N = "Analyzing classes: ";
 
-	@NotNull
-	private final Project _project;
-
 	@NotNull
 	private final Module module;
 
@@ -68,16 +61,29 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 
 	private final ProgressIndicator _indicator;
 	private final AtomicBoolean _cancellingByUser;
-	private final TransferToEDTQueue<Runnable> _transferToEDTQueue;
-
-	private int pass = -1;
-	private int bugCount;
-	private int stepCount;
-	private int goal;
+	private final NewBugQueue newBugQueue;
+
+	/*
+	 * Progress state, written by the analysis thread only and formatted by ReporterGroup#updateProgress.
+	 */
+	private volatile int pass = -1;
+	private volatile int bugCount;
+	private volatile int stepCount;
+	private volatile int goal;
+	private volatile int workDone;
+	private volatile int workTotal;
 	@NonNls
-	private String _currentStageName;
-	private boolean _canceled;
-	private int analyzedClassCountOffset;
+	private volatile String _currentStageName;
+	@Nullable
+	private volatile ClassDescriptor currentClass;
+	private volatile boolean finishing;
+	private volatile boolean finished;
+	private volatile boolean _canceled;
+	private boolean outOfProcess;
+	@NotNull
+	private final ReporterGroup reporterGroup;
+	@Nullable
+	private ClassModuleIndex classModuleIndex;
 
 
 	Reporter(
@@ -87,25 +93,19 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 			@NotNull final ProjectFilterSettings projectFilterSettings,
 			@NotNull final ProgressIndicator indicator,
 			@NotNull final AtomicBoolean cancellingByUser,
-			final int analyzedClassCountOffset
+			@NotNull final ReporterGroup reporterGroup
 	) {
-		_project = project;
 		this.module = module;
 		_bugCollection = bugCollection;
 		this.projectFilterSettings = projectFilterSettings;
 		_indicator = indicator;
 		_cancellingByUser = cancellingByUser;
-		this.analyzedClassCountOffset = analyzedClassCountOffset;
-		_transferToEDTQueue = new TransferToEDTQueue<Runnable>("Add New Bug Instance", new RunnableProcessor(), new Condition<Object>() {
-			@Override
-			public boolean value(final Object o) {
-				return project.isDisposed() || _cancellingByUser.get() || _indicator.isCanceled();
-			}
-		}, 500);
+		this.reporterGroup = reporterGroup;
+		newBugQueue = new NewBugQueue(project, () -> _cancellingByUser.get() || _indicator.isCanceled());
 	}
 
 
-	private boolean checkCancel() {
+	boolean checkCancel() {
 		if (_canceled) {
 			return true;
 		}
@@ -122,29 +122,76 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 	}
 
 
+	/**
+	 * FindBugs ignores the interrupt while it scans the codebases, which can take minutes for big projects.
+	 * Unwinds the engine from a progress callback instead, see {@link AnalysisCanceledException}.
+	 * Not used out of process, the worker aborts the scan itself.
+	 */
+	private void abortIfCanceled() {
+		if (checkCancel() && !outOfProcess) {
+			throw new AnalysisCanceledException();
+		}
+	}
+
+
+	/**
+	 * Unlike {@link #checkCancel()}, this has no side effects.
+	 */
+	boolean isCancelRequested() {
+		return _canceled || _indicator.isCanceled() || _cancellingByUser.get();
+	}
+
+
+	void setCanceled() {
+		_canceled = true;
+	}
+
+
+	/**
+	 * The engine runs in a worker process, see {@link AnalysisWorkers}. Cancellation must not interrupt
+	 * the current thread, the worker is canceled by {@link AnalysisWorkers}.
+	 */
+	void setOutOfProcess(final boolean outOfProcess) {
+		this.outOfProcess = outOfProcess;
+	}
+
+
+	/**
+	 * Assign the bugs to the module of their primary class instead of {@link #module}
+	 * (one engine over several modules).
+	 */
+	void setClassModuleIndex(@Nullable final ClassModuleIndex classModuleIndex) {
+		this.classModuleIndex = classModuleIndex;
+	}
+
+
 	@Override
 	protected void doReportBug(@NotNull final BugInstance bug) {
 		if (!projectFilterSettings.displayWarning(bug)) {
 			return;
 		}
-		_bugCollection.add(bug);
+		Module bugModule = module;
+		SortedBugCollection bugCollection = _bugCollection;
+		if (classModuleIndex != null) {
+			bugModule = classModuleIndex.getModule(bug.getPrimaryClass().getClassName());
+			bugCollection = classModuleIndex.getBugCollection(bugModule);
+		}
+		bugCollection.add(bug);
 		bugCount++;
 		observeClass(bug.getPrimaryClass().getClassDescriptor());
 
-		// Guarantee thread visibility *one* time.
-    final AtomicReference<SortedBugCollection> bugCollectionRef = new AtomicReference<>(_bugCollection);
-    final AtomicReference<BugInstance> bugRef = new AtomicReference<>(bug);
-		final int analyzedClassCount = analyzedClassCountOffset + getProjectStats().getNumClasses();
-		_transferToEDTQueue.offer(new Runnable() {
-			/**
-			 * Invoked by EDT.
-			 */
-			@Override
-			public void run() {
-				final Bug bug = new Bug(module, bugCollectionRef.get(), bugRef.get());
-				MessageBusManager.publishNewBug(_project, bug, analyzedClassCount);
-			}
-		});
+		newBugQueue.offer(new Bug(bugModule, bugCollection, bug), reporterGroup.getAnalyzedClassCount());
+	}
+
+
+	/**
+	 * Reports the cached bugs of a class which is not analyzed again, see {@link IncrementalAnalysisCache}.
+	 */
+	void replayClass(@NotNull final String className, @NotNull final List<BugInstance> bugs) {
+		getProjectStats().addClass(className, null, false, 0);
+		for (final BugInstance bug : bugs) {
+			doReportBug(bug);
+		}
 	}
 
 
@@ -156,6 +203,7 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 
 	@Override
 	public void startArchive(final String s) {
+		abortIfCanceled();
 	}
 
 
@@ -200,9 +248,10 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 		EventDispatchThreadHelper.invokeAndWait(new EventDispatchThreadHelper.OperationAdapter() {
 			@Override
 			public void run() {
-				_transferToEDTQueue.drain();
+				newBugQueue.drain();
 			}
 		});
+		finished = true;
 		_indicator.setText("Finished: Found " + bugCount + " bugs.");
 		_indicator.finishNonCancelableSection();
 	}
@@ -225,17 +274,59 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 			return;
 		}
 
-		final String className = classDescriptor.getDottedClassName();
-		_indicator.setText("Observing class: " + className);
-		if (pass <= 0) {
-			_indicator.setText("Prescanning... (found " + bugCount + ", checking " + className + ')');
+		currentClass = classDescriptor;
+	}
+
+
+	/**
+	 * Invoked by the progress timer of {@link ReporterGroup}, not by the analysis thread.
+	 */
+	void updateProgress(@NotNull final ProgressIndicator indicator) {
+		if (finishing) {
+			indicator.setText("Finishing analysis...");
 		} else {
-			_indicator.setText("Checking... (found " + bugCount + ", checking " + className + ')');
+			final ClassDescriptor classDescriptor = currentClass;
+			if (classDescriptor != null) {
+				final String className = classDescriptor.getDottedClassName();
+				if (pass <= 0) {
+					indicator.setText("Prescanning... (found " + bugCount + ", checking " + className + ')');
+				} else {
+					indicator.setText("Checking... (found " + bugCount + ", checking " + className + ')');
+				}
+			}
+		}
+		final String stageName = _currentStageName;
+		if (stageName != null) {
+			final int work = pass == 0 ? 1 : 2;
+			indicator.setText2(stageName + ' ' + stepCount + '/' + goal + (ANALYZING_CLASSES_i18N.equals(stageName) ? " (pass #" + work + "/2)" : ""));
 		}
 	}
 
+
+	/**
+	 * @return finished archives and classes (over all passes)
+	 */
+	int getWorkDone() {
+		return workDone;
+	}
+
+
+	/**
+	 * @return archives and classes (over all passes) to analyze, {@code 0} until FindBugs predicted the passes
+	 */
+	int getWorkTotal() {
+		return workTotal;
+	}
+
+
+	boolean isFinished() {
+		return finished;
+	}
+
 	private void cancelFindBugs() {
-		Thread.currentThread().interrupt(); // causes break in FindBugs main loop
+		if (!outOfProcess) {
+			Thread.currentThread().interrupt(); // causes break in FindBugs main loop
+		}
 		_canceled = true;
 	}
 
@@ -254,25 +345,27 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 	@Override
 	public void finishArchive() {
 		step();
+		abortIfCanceled();
 	}
 
 
 	@Override
 	public void finishClass() {
 		step();
+		checkCancel(); // the interrupt is checked by FindBugs before the next class
 	}
 
 
 	@Override
 	public void finishPerClassAnalysis() {
-		_indicator.setText("Finishing analysis...");
+		finishing = true;
 	}
 
 
 	@Override
 	public void reportNumberOfArchives(final int numArchives) {
 		beginStage("Scanning archives: ", numArchives);
-		checkCancel(); // interrupt here has no effect, this is a FindBugs bug... bad for jumbo projects.
+		abortIfCanceled(); // interrupt here has no effect, this is a FindBugs bug... bad for jumbo projects.
 	}
 
 
@@ -285,12 +378,11 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 
 	@Override
 	public void predictPassCount(final int[] classesPerPass) {
-		int expectedWork = 0;
+		int expectedWork = workDone; // scanned archives
 		for (final int count : classesPerPass) {
-			expectedWork += 2 * count;
+			expectedWork += count;
 		}
-		expectedWork -= classesPerPass[0];
-		_indicator.setText("Performing bug checking... " + expectedWork);
+		workTotal = expectedWork;
 	}
 
 
@@ -298,22 +390,22 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 		stepCount = 0;
 		this.goal = goal;
 		_currentStageName = stageName;
-		_indicator.setText2(stageName + " 0/" + this.goal);
 	}
 
 
 	private void step() {
 		stepCount++;
-		final int work = pass == 0 ? 1 : 2;
-		_indicator.setText2(_currentStageName + ' ' + stepCount + '/' + goal + (ANALYZING_CLASSES_i18N.equals(_currentStageName) ? " (pass #" + work + "/2)" : ""));
+		workDone++;
 	}
 
 
-	private static class RunnableProcessor implements Processor<Runnable> {
-		@Override
-		public boolean process(Runnable runnable) {
-			runnable.run();
-			return true;
+	/**
+	 * Thrown by a progress callback to leave {@link edu.umd.cs.findbugs.FindBugs2#execute()} during codebase scanning.
+	 * The reporter is canceled already, so the catcher only has to stop the analysis.
+	 */
+	static final class AnalysisCanceledException extends RuntimeException {
+		AnalysisCanceledException() {
+			super("SpotBugs analysis canceled", null, false, false);
 		}
 	}
 
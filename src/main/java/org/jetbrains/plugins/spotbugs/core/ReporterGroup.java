@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combines the {@link Reporter} instances of one analysis run.
+ * The analyzed class count is the sum over all reporters, no matter
+ * if the modules are analyzed one after another or concurrently.
+ * <p>
+ * The reporters only count, a timer formats the progress text and fraction a few times per second.
+ */
+final class ReporterGroup {
+
+	private static final int DEFAULT_PROGRESS_INTERVAL_MS = 250;
+	private static final int PROGRESS_INTERVAL_MS = StringUtil.parseInt(System.getProperty("idea.spotbugs.progress.intervalMillis", String.valueOf(DEFAULT_PROGRESS_INTERVAL_MS)), DEFAULT_PROGRESS_INTERVAL_MS);
+
+	@NotNull
+	private final List<Reporter> reporters;
+
+	@Nullable
+	private ScheduledFuture<?> progressUpdater;
+
+	ReporterGroup() {
+		reporters = new CopyOnWriteArrayList<>();
+	}
+
+	void add(@NotNull final Reporter reporter) {
+		reporters.add(reporter);
+	}
+
+	void remove(@NotNull final Reporter reporter) {
+		reporters.remove(reporter);
+	}
+
+	int getAnalyzedClassCount() {
+		int ret = 0;
+		for (final Reporter reporter : reporters) {
+			ret += reporter.getProjectStats().getNumClasses();
+		}
+		return ret;
+	}
+
+	void startProgress(@NotNull final ProgressIndicator indicator) {
+		stopProgress();
+		progressUpdater = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+				() -> updateProgress(indicator),
+				PROGRESS_INTERVAL_MS,
+				PROGRESS_INTERVAL_MS,
+				TimeUnit.MILLISECONDS
+		);
+	}
+
+	void stopProgress() {
+		if (progressUpdater != null) {
+			progressUpdater.cancel(false);
+			progressUpdater = null;
+		}
+	}
+
+	/**
+	 * The text is taken from the latest running reporter. The fraction covers all reporters which know their work,
+	 * so it can step back when the next module of a sequential run starts.
+	 */
+	private void updateProgress(@NotNull final ProgressIndicator indicator) {
+		long done = 0;
+		long total = 0;
+		Reporter current = null;
+		for (final Reporter reporter : reporters) {
+			final int workTotal = reporter.getWorkTotal();
+			if (workTotal > 0) {
+				total += workTotal;
+				done += Math.min(reporter.getWorkDone(), workTotal);
+			}
+			if (!reporter.isFinished()) {
+				current = reporter;
+			}
+		}
+		if (current != null) {
+			current.updateProgress(indicator);
+		}
+		if (total > 0) {
+			indicator.setIndeterminate(false);
+			indicator.setFraction((double) done / total);
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.LowMemoryWatcher;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
+import edu.umd.cs.findbugs.classfile.IErrorLogger;
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the aux classpath of each module warm between two analysis runs: the roots of the module and the
+ * opened codebases of its aux classpath entries. {@link WarmFindBugs2} adds the codebases to the class path
+ * of its run, so a small analysis like "Analyze class under cursor" does not open and scan the compiler
+ * output of all dependencies again.
+ * <p>
+ * The contexts are invalidated when the module roots change, and evicted when they were not used for
+ * {@code idea.spotbugs.warmContext.idleSeconds} seconds or the IDE runs low on memory. The codebases of an
+ * evicted context are closed once no running engine uses them anymore.
+ */
+@Service(Service.Level.PROJECT)
+public final class WarmAnalysisContexts implements Disposable {
+
+	private static final Logger LOGGER = Logger.getInstance(WarmAnalysisContexts.class);
+
+	private static final int DEFAULT_IDLE_SECONDS = 300;
+	private static final long IDLE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(StringUtil.parseInt(System.getProperty("idea.spotbugs.warmContext.idleSeconds", String.valueOf(DEFAULT_IDLE_SECONDS)), DEFAULT_IDLE_SECONDS));
+
+	@NotNull
+	private final Map<Pair<Module, Boolean>, Context> contexts;
+
+	@NotNull
+	private final ScheduledFuture<?> evictor;
+
+	public WarmAnalysisContexts(@NotNull final Project project) {
+		contexts = new ConcurrentHashMap<>();
+		project.getMessageBus().connect(this).subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+			@Override
+			public void rootsChanged(@NotNull final ModuleRootEvent event) {
+				invalidate();
+			}
+		});
+		LowMemoryWatcher.register(this::invalidate, this);
+		evictor = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+				this::evictIdle, IDLE_TIMEOUT_MS, IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param factory creates the context if there is no valid one
+	 */
+	@NotNull
+	Context getContext(@NotNull final Module module, final boolean includeTests, @NotNull final Supplier<Context> factory) {
+		final Context ret = contexts.computeIfAbsent(Pair.create(module, includeTests), k -> factory.get());
+		ret.lastUsed = System.currentTimeMillis();
+		return ret;
+	}
+
+	public void invalidate() {
+		if (!contexts.isEmpty()) {
+			LOGGER.debug("Invalidate warm analysis contexts");
+		}
+		contexts.values().removeIf(context -> {
+			context.retire();
+			return true;
+		});
+	}
+
+	private void evictIdle() {
+		final long minLastUsed = System.currentTimeMillis() - IDLE_TIMEOUT_MS;
+		contexts.values().removeIf(context -> {
+			if (context.lastUsed < minLastUsed && !context.isInUse()) {
+				context.retire();
+				return true;
+			}
+			return false;
+		});
+	}
+
+	@Override
+	public void dispose() {
+		evictor.cancel(false);
+		invalidate();
+	}
+
+	@NotNull
+	public static WarmAnalysisContexts getInstance(@NotNull final Project project) {
+		return project.getService(WarmAnalysisContexts.class);
+	}
+
+	/**
+	 * The source directories and aux classpath entries (compiler output of the module and its dependencies)
+	 * of one module, and the codebases of the aux classpath entries opened so far.
+	 * <p>
+	 * The entries are kept whether the directories exist or not, a clean build creates them
+	 * after the context was created. Only the existing ones are used for a run.
+	 */
+	static final class Context {
+
+		@NotNull
+		final List<String> sourceDirs;
+
+		@NotNull
+		private final List<String> auxClasspathEntries;
+
+		/**
+		 * Guarded by this.
+		 */
+		@NotNull
+		private final Map<String, ICodeBase> codeBases;
+
+		/**
+		 * Number of engines using the codebases, guarded by this.
+		 */
+		private int users;
+
+		/**
+		 * Guarded by this.
+		 */
+		private boolean retired;
+
+		private volatile long lastUsed;
+
+		Context(@NotNull final List<String> sourceDirs, @NotNull final List<String> auxClasspathEntries) {
+			this.sourceDirs = sourceDirs;
+			this.auxClasspathEntries = auxClasspathEntries;
+			codeBases = new HashMap<>();
+			lastUsed = System.currentTimeMillis();
+		}
+
+		/**
+		 * @return the aux classpath entries which exist now
+		 */
+		@NotNull
+		List<String> getAuxClasspathEntries() {
+			final List<String> ret = new ArrayList<>(auxClasspathEntries.size());
+			for (final String entry : auxClasspathEntries) {
+				if (new File(entry).exists()) {
+					ret.add(entry);
+				}
+			}
+			return ret;
+		}
+
+		/**
+		 * Opens the codebases of the existing aux classpath entries which are not open yet. Each call must be
+		 * followed by one {@link #release()}.
+		 *
+		 * @param errorLogger gets the entries which can not be opened, like the class path builder of the engine
+		 * @return the codebases of the existing aux classpath entries, in classpath order; must not be closed by the caller
+		 */
+		@NotNull
+		synchronized List<ICodeBase> acquire(@NotNull final IErrorLogger errorLogger) {
+			final List<String> entries = getAuxClasspathEntries();
+			final List<ICodeBase> ret = new ArrayList<>(entries.size());
+			for (final String entry : entries) {
+				ICodeBase codeBase = codeBases.get(entry);
+				if (codeBase == null) {
+					final ICodeBaseLocator locator = ClassFactory.instance().createFilesystemCodeBaseLocator(entry);
+					try {
+						codeBase = locator.openCodeBase();
+					} catch (final IOException | ResourceNotFoundException e) {
+						errorLogger.logError("Cannot open codebase " + locator, e);
+						continue;
+					}
+					codeBase.setApplicationCodeBase(false);
+					codeBase.setHowDiscovered(ICodeBase.Discovered.SPECIFIED);
+					codeBases.put(entry, codeBase); // closed on release if the context is retired meanwhile
+				}
+				ret.add(codeBase);
+			}
+			users++;
+			lastUsed = System.currentTimeMillis();
+			return ret;
+		}
+
+		synchronized void release() {
+			users--;
+			lastUsed = System.currentTimeMillis();
+			if (retired && users == 0) {
+				close();
+			}
+		}
+
+		private synchronized boolean isInUse() {
+			return users > 0;
+		}
+
+		/**
+		 * The codebases are closed as soon as no engine uses them.
+		 */
+		private synchronized void retire() {
+			retired = true;
+			if (users == 0) {
+				close();
+			}
+		}
+
+		private void close() {
+			for (final ICodeBase codeBase : codeBases.values()) {
+				codeBase.close();
+			}
+			codeBases.clear();
+		}
+	}
+}
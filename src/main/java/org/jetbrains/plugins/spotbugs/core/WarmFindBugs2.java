@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Engine which takes the codebases of the aux classpath from a {@link WarmAnalysisContexts.Context} instead of
+ * opening and scanning them on every run. The project of the engine must not contain the aux classpath entries,
+ * see {@link FindBugsProject#createWithoutAuxClasspath()}.
+ * <p>
+ * The class path of {@link FindBugs2} is private, but it is created before the analysis cache and filled after it,
+ * so the warm codebases are added in {@link #createAnalysisCache()}. They come before the system codebases like the
+ * aux classpath entries of the project would.
+ */
+final class WarmFindBugs2 extends FindBugs2 {
+
+	@NotNull
+	private final WarmAnalysisContexts.Context context;
+
+	@NotNull
+	private final AtomicBoolean acquired;
+
+	WarmFindBugs2(@NotNull final WarmAnalysisContexts.Context context) {
+		this.context = context;
+		acquired = new AtomicBoolean();
+	}
+
+	@Override
+	protected IAnalysisCache createAnalysisCache() throws IOException {
+		final IAnalysisCache ret = super.createAnalysisCache();
+		final List<ICodeBase> codeBases = context.acquire(getBugReporter());
+		acquired.set(true);
+		for (final ICodeBase codeBase : codeBases) {
+			ret.getClassPath().addCodeBase(new SharedCodeBase(codeBase));
+		}
+		return ret;
+	}
+
+	@Override
+	public void dispose() {
+		if (acquired.compareAndSet(true, false)) {
+			context.release();
+		}
+		super.dispose();
+	}
+
+	/**
+	 * The class path of a run closes its codebases, a shared codebase is closed by its context.
+	 */
+	private static final class SharedCodeBase implements ICodeBase {
+
+		@NotNull
+		private final ICodeBase delegate;
+
+		private SharedCodeBase(@NotNull final ICodeBase delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public ICodeBaseLocator getCodeBaseLocator() {
+			return delegate.getCodeBaseLocator();
+		}
+
+		@Override
+		public ICodeBaseEntry lookupResource(final String resourceName) {
+			return delegate.lookupResource(resourceName);
+		}
+
+		@Override
+		public void setApplicationCodeBase(final boolean isAppCodeBase) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isApplicationCodeBase() {
+			return false;
+		}
+
+		@Override
+		public void setHowDiscovered(final Discovered howDiscovered) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Discovered getHowDiscovered() {
+			return delegate.getHowDiscovered();
+		}
+
+		@Override
+		public boolean containsSourceFiles() throws InterruptedException {
+			return delegate.containsSourceFiles();
+		}
+
+		@Override
+		public String getPathName() {
+			return delegate.getPathName();
+		}
+
+		@Override
+		public void setLastModifiedTime(final long lastModifiedTime) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getLastModifiedTime() {
+			return delegate.getLastModifiedTime();
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public String toString() {
+			return delegate.toString();
+		}
+	}
+}
@@ -49,6 +49,64 @@ public final class WorkspaceSettings implements PersistentStateComponent<Workspa
 	@Tag
 	public boolean runInBackground = false;
 
+	/**
+	 * Analyze the modules of one run concurrently on a bounded worker pool instead of one after another.
+	 */
+	@Tag
+	public boolean analyzeModulesInParallel = false;
+
+	/**
+	 * Maximum number of modules analyzed at the same time, {@code 0} means one per available processor.
+	 * The effective limit can be lower, see {@link ParallelAnalysisExecutor}.
+	 */
+	@Tag
+	public int maxParallelAnalysis = 0;
+
+	/**
+	 * Reuse the cached results of classes which did not change since the last analysis.
+	 *
+	 * @see IncrementalAnalysisCache
+	 */
+	@Tag
+	public boolean incrementalAnalysis = false;
+
+	/**
+	 * Analyze all modules of one run with a single engine, so classes shared by several modules
+	 * are loaded and analyzed only once. Takes precedence over {@link #analyzeModulesInParallel}.
+	 *
+	 * @see ClassModuleIndex
+	 */
+	@Tag
+	public boolean analyzeModulesInSingleEngine = false;
+
+	/**
+	 * Split the classes of a large module into shards which are analyzed by concurrent engines.
+	 *
+	 * @see ModuleSharding
+	 */
+	@Tag
+	public boolean analyzeModuleInShards = false;
+
+	/**
+	 * Do not split a module if an enabled detector needs to see all classes of the module.
+	 */
+	@Tag
+	public boolean keepWholeModuleForDetectors = true;
+
+	/**
+	 * Run the engine in a separate JVM instead of the IDE process.
+	 *
+	 * @see AnalysisWorkers
+	 */
+	@Tag
+	public boolean analyzeOutOfProcess = false;
+
+	/**
+	 * Maximum heap of the worker JVM in MB, {@code 0} means the JVM default.
+	 */
+	@Tag
+	public int outOfProcessMaxHeapMb = 0;
+
 	/**
 	 * Last used export directory for "Export Bug Collection".
 	 */
@@ -23,22 +23,25 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.JTree;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * {@link com.intellij.ide.util.treeView.TreeState} can only be used if the TreeNode-instances are recycled.
  * Otherwise restore expand-state does not work.
+ * Nodes are identified by a key, {@link Object#toString()} by default.
  */
 public final class TreeState {
 
 	@NotNull
 	private final JTree tree;
 
+	@NotNull
+	private final Function<TreeNode, String> key;
+
 	@NotNull
 	private final List<String[]> expanded;
 
@@ -47,10 +50,12 @@ public final class TreeState {
 
 	private TreeState(
 			@NotNull final JTree tree,
+			@NotNull final Function<TreeNode, String> key,
 			@NotNull final List<String[]> expanded,
 			@Nullable final List<String[]> selection
 	) {
 		this.tree = tree;
+		this.key = key;
 		this.expanded = expanded;
 		this.selection = selection;
 	}
@@ -89,7 +94,7 @@ public final class TreeState {
 			@NotNull final List<TreeNode> havePath,
 			@NotNull final TreeNode parent) {
 
-		if (parent.toString().equals(wantPath[depth])) {
+		if (key.apply(parent).equals(wantPath[depth])) {
 			havePath.add(parent);
 			if (wantPath.length > (depth + 1)) {
 				for (int i = 0; i < parent.getChildCount(); i++) {
@@ -105,10 +110,14 @@ public final class TreeState {
 
 	@NotNull
 	public static TreeState create(@NotNull final JTree tree) {
+		return create(tree, String::valueOf);
+	}
+
+	@NotNull
+	public static TreeState create(@NotNull final JTree tree, @NotNull final Function<TreeNode, String> key) {
     final List<String[]> expanded = new ArrayList<>();
-		final TreeModel model = tree.getModel();
-		final DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
-		addExpandedRecursive(expanded, tree, root);
+		final TreeNode root = (TreeNode) tree.getModel().getRoot();
+		addExpandedRecursive(expanded, tree, key, new TreePath(root));
 
 		final TreePath[] selected = tree.getSelectionPaths();
 		List<String[]> strSelection = null;
@@ -118,7 +127,7 @@ public final class TreeState {
 				final Object[] path = treePath.getPath();
 				final String[] strPath = new String[path.length];
 				for (int i = 0; i < path.length; i++) {
-					strPath[i] = String.valueOf(path[i]);
+					strPath[i] = key.apply((TreeNode) path[i]);
 				}
 				strSelection.add(strPath);
 			}
@@ -126,6 +135,7 @@ public final class TreeState {
 
 		return new TreeState(
 				tree,
+				key,
 				expanded,
 				strSelection
 		);
@@ -134,18 +144,19 @@ public final class TreeState {
 	private static void addExpandedRecursive(
 			@NotNull final List<String[]> expanded,
 			@NotNull final JTree tree,
-			@NotNull final DefaultMutableTreeNode parent
+			@NotNull final Function<TreeNode, String> key,
+			@NotNull final TreePath treePath
 	) {
-		final TreeNode[] path = parent.getPath();
-		final TreePath treePath = new TreePath(path);
 		if (tree.isExpanded(treePath)) {
+			final Object[] path = treePath.getPath();
 			final String[] strPath = new String[path.length];
 			for (int i = 0; i < path.length; i++) {
-				strPath[i] = path[i].toString();
+				strPath[i] = key.apply((TreeNode) path[i]);
 			}
 			expanded.add(strPath);
+			final TreeNode parent = (TreeNode) treePath.getLastPathComponent();
 			for (int i = 0; i < parent.getChildCount(); i++) {
-				addExpandedRecursive(expanded, tree, (DefaultMutableTreeNode) parent.getChildAt(i));
+				addExpandedRecursive(expanded, tree, key, treePath.pathByAddingChild(parent.getChildAt(i)));
 			}
 		}
 	}
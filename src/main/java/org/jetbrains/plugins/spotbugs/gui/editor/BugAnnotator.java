@@ -37,6 +37,7 @@ import org.jetbrains.plugins.spotbugs.common.util.BugInstanceUtil;
 import org.jetbrains.plugins.spotbugs.common.util.StringUtilFb;
 import org.jetbrains.plugins.spotbugs.core.FindBugsState;
 import org.jetbrains.plugins.spotbugs.core.ProblemCacheService;
+import org.jetbrains.plugins.spotbugs.core.ProblemIndex;
 import org.jetbrains.plugins.spotbugs.core.WorkspaceSettings;
 import org.jetbrains.plugins.spotbugs.intentions.ClearAndSuppressBugIntentionAction;
 import org.jetbrains.plugins.spotbugs.intentions.ClearBugIntentionAction;
@@ -47,7 +48,6 @@ import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
 import java.awt.Font;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public final class BugAnnotator implements Annotator {
 
@@ -68,18 +68,23 @@ public final class BugAnnotator implements Annotator {
 		if (cacheService == null) {
 			return;
 		}
-		final Map<PsiFile, List<ExtendedProblemDescriptor>> problems = cacheService.getProblems();
-
 		final PsiFile psiFile = psiElement.getContainingFile();
-		if (problems.containsKey(psiFile)) {
-			addAnnotation(psiElement, new ArrayList<>(problems.get(psiFile)), annotationHolder);
+		if (psiFile == null) {
+			return;
+		}
+		final ProblemIndex problemIndex = cacheService.getIndex(psiFile);
+		if (problemIndex != null) {
+			final TextRange textRange = psiElement.getTextRange();
+			if (textRange != null) {
+				addAnnotation(psiElement, problemIndex.getStartingAt(textRange.getStartOffset()), annotationHolder);
+			}
 		}
 	}
 
 	private static void addAnnotation(@NotNull final PsiElement psiElement, final Iterable<ExtendedProblemDescriptor> problemDescriptors, @NotNull final AnnotationHolder annotationHolder) {
 		final List<ExtendedProblemDescriptor> matchingDescriptors = new ArrayList<>();
 		for (final ExtendedProblemDescriptor descriptor : problemDescriptors) {
-			final PsiElement problemPsiElement = descriptor.getPsiElement();
+			final PsiElement problemPsiElement = descriptor.getResolvedPsiElement();
 
 			if (psiElement.equals(problemPsiElement)) {
 				matchingDescriptors.add(descriptor);
@@ -92,7 +97,7 @@ public final class BugAnnotator implements Annotator {
 		final BugInstance bugInstance = problemDescriptor.getBug().getInstance();
 		final int priority = bugInstance.getPriority();
 		final AnnotationBuilder annotation;
-		final PsiElement problemElement = problemDescriptor.getPsiElement();
+		final PsiElement problemElement = problemDescriptor.getResolvedPsiElement();
 		final TextRange textRange = problemElement.getTextRange();
 
 
@@ -40,6 +40,7 @@ import org.jetbrains.plugins.spotbugs.common.util.GuiUtil;
 import org.jetbrains.plugins.spotbugs.common.util.IdeaUtilImpl;
 import org.jetbrains.plugins.spotbugs.core.FindBugsState;
 import org.jetbrains.plugins.spotbugs.core.ProblemCacheService;
+import org.jetbrains.plugins.spotbugs.core.ProblemIndex;
 import org.jetbrains.plugins.spotbugs.core.WorkspaceSettings;
 import org.jetbrains.plugins.spotbugs.gui.intentions.GroupBugIntentionListPopupStep;
 import org.jetbrains.plugins.spotbugs.gui.intentions.RootGroupBugIntentionListPopupStep;
@@ -53,7 +54,6 @@ import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Pattern;
 
 public final class BugsLineMarkerProvider implements LineMarkerProvider {
@@ -83,20 +83,16 @@ public final class BugsLineMarkerProvider implements LineMarkerProvider {
 			return null;
 		}
 		final PsiFile psiFile = IdeaUtilImpl.getPsiFile(psiElement);
-		final Map<PsiFile, List<ExtendedProblemDescriptor>> problemCache = cacheService.getProblems();
+		final ProblemIndex problemIndex = psiFile != null ? cacheService.getIndex(psiFile) : null;
 
-		if (problemCache.containsKey(psiFile)) {
+		if (problemIndex != null) {
 			final List<ExtendedProblemDescriptor> matchingDescriptors = new ArrayList<ExtendedProblemDescriptor>();
-			final List<ExtendedProblemDescriptor> problemDescriptors = problemCache.get(psiFile);
-			if (problemDescriptors == null) {
-				return null;
-			}
-
-			final Iterable<ExtendedProblemDescriptor> descriptors = new ArrayList<ExtendedProblemDescriptor>(problemDescriptors);
+			// the first leaf of a problem element starts at the start offset of the element
+			final Iterable<ExtendedProblemDescriptor> descriptors = problemIndex.getStartingAt(psiElement.getTextRange().getStartOffset());
 			for (final ExtendedProblemDescriptor problemDescriptor : descriptors) {
 
-				final PsiElement problemPsiElement = problemDescriptor.getPsiElement();
-				if (psiElement == firstLeafOrNull(problemPsiElement)) {
+				final PsiElement problemPsiElement = problemDescriptor.getResolvedPsiElement();
+				if (problemPsiElement != null && psiElement == firstLeafOrNull(problemPsiElement)) {
 					matchingDescriptors.add(problemDescriptor);
 					//if(psiElement instanceof PsiAnonymousClass) {
 					//	final Editor[] editors = com.intellij.openapi.editor.EditorFactory.getInstance().getEditors(IdeaUtilImpl.getDocument(psiFile.getProject(), problemDescriptor));
@@ -20,6 +20,7 @@
 package org.jetbrains.plugins.spotbugs.gui.settings;
 
 import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.ui.JBIntSpinner;
 import com.intellij.ui.components.JBCheckBox;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
@@ -31,14 +32,25 @@ import org.jetbrains.plugins.spotbugs.gui.common.VerticalFlowLayout;
 import org.jetbrains.plugins.spotbugs.plugins.Plugins;
 import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
 
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import java.awt.BorderLayout;
+import java.awt.FlowLayout;
 
 final class GeneralTab extends JPanel {
+	private static final int MAX_PARALLEL_ANALYSIS_LIMIT = 64;
+
 	private JBCheckBox compileBeforeAnalyze;
 	private JBCheckBox analyzeAfterCompile;
 	private JBCheckBox analyzeAfterAutoMake;
 	private JBCheckBox runInBackground;
+	private JBCheckBox analyzeModulesInParallel;
+	private JBIntSpinner maxParallelAnalysis;
+	private JBCheckBox incrementalAnalysis;
+	private JBCheckBox analyzeModulesInSingleEngine;
+	private JBCheckBox analyzeOutOfProcess;
+	private JBCheckBox analyzeModuleInShards;
+	private JBCheckBox keepWholeModuleForDetectors;
 	private JBCheckBox toolWindowToFront;
 	private PluginTablePane plugin;
 
@@ -48,6 +60,13 @@ final class GeneralTab extends JPanel {
 		analyzeAfterCompile = new JBCheckBox(ResourcesLoader.getString("general.analyzeAfterCompile.title"));
 		analyzeAfterAutoMake = new JBCheckBox(ResourcesLoader.getString("general.analyzeAfterAutoMake.title"));
 		runInBackground = new JBCheckBox(ResourcesLoader.getString("general.runInBackground.title"));
+		analyzeModulesInParallel = new JBCheckBox(ResourcesLoader.getString("general.analyzeModulesInParallel.title"));
+		maxParallelAnalysis = new JBIntSpinner(0, 0, MAX_PARALLEL_ANALYSIS_LIMIT);
+		incrementalAnalysis = new JBCheckBox(ResourcesLoader.getString("general.incrementalAnalysis.title"));
+		analyzeModulesInSingleEngine = new JBCheckBox(ResourcesLoader.getString("general.analyzeModulesInSingleEngine.title"));
+		analyzeOutOfProcess = new JBCheckBox(ResourcesLoader.getString("general.analyzeOutOfProcess.title"));
+		analyzeModuleInShards = new JBCheckBox(ResourcesLoader.getString("general.analyzeModuleInShards.title"));
+		keepWholeModuleForDetectors = new JBCheckBox(ResourcesLoader.getString("general.keepWholeModuleForDetectors.title"));
 		toolWindowToFront = new JBCheckBox(ResourcesLoader.getString("general.toolWindowToFront.title"));
 		plugin = new PluginTablePane();
 
@@ -56,6 +75,19 @@ final class GeneralTab extends JPanel {
 		topPane.add(analyzeAfterCompile);
 		topPane.add(analyzeAfterAutoMake);
 		topPane.add(runInBackground);
+		topPane.add(analyzeModulesInParallel);
+		final JPanel maxParallelAnalysisPane = new JPanel(new FlowLayout(FlowLayout.LEFT, UIUtil.DEFAULT_HGAP, 0));
+		final JLabel maxParallelAnalysisLabel = new JLabel(ResourcesLoader.getString("general.maxParallelAnalysis.title"));
+		maxParallelAnalysisLabel.setToolTipText(ResourcesLoader.getString("general.maxParallelAnalysis.description"));
+		maxParallelAnalysisLabel.setLabelFor(maxParallelAnalysis);
+		maxParallelAnalysisPane.add(maxParallelAnalysisLabel);
+		maxParallelAnalysisPane.add(maxParallelAnalysis);
+		topPane.add(maxParallelAnalysisPane);
+		topPane.add(incrementalAnalysis);
+		topPane.add(analyzeModulesInSingleEngine);
+		topPane.add(analyzeOutOfProcess);
+		topPane.add(analyzeModuleInShards);
+		topPane.add(keepWholeModuleForDetectors);
 		topPane.add(toolWindowToFront);
 
 		add(topPane, BorderLayout.NORTH);
@@ -75,6 +107,13 @@ final class GeneralTab extends JPanel {
 				analyzeAfterCompile.isSelected() != settings.analyzeAfterCompile ||
 				analyzeAfterAutoMake.isSelected() != settings.analyzeAfterAutoMake ||
 				runInBackground.isSelected() != settings.runInBackground ||
+				analyzeModulesInParallel.isSelected() != settings.analyzeModulesInParallel ||
+				maxParallelAnalysis.getNumber() != settings.maxParallelAnalysis ||
+				incrementalAnalysis.isSelected() != settings.incrementalAnalysis ||
+				analyzeModulesInSingleEngine.isSelected() != settings.analyzeModulesInSingleEngine ||
+				analyzeOutOfProcess.isSelected() != settings.analyzeOutOfProcess ||
+				analyzeModuleInShards.isSelected() != settings.analyzeModuleInShards ||
+				keepWholeModuleForDetectors.isSelected() != settings.keepWholeModuleForDetectors ||
 				toolWindowToFront.isSelected() != settings.toolWindowToFront;
 	}
 
@@ -87,6 +126,13 @@ final class GeneralTab extends JPanel {
 		settings.analyzeAfterCompile = analyzeAfterCompile.isSelected();
 		settings.analyzeAfterAutoMake = analyzeAfterAutoMake.isSelected();
 		settings.runInBackground = runInBackground.isSelected();
+		settings.analyzeModulesInParallel = analyzeModulesInParallel.isSelected();
+		settings.maxParallelAnalysis = maxParallelAnalysis.getNumber();
+		settings.incrementalAnalysis = incrementalAnalysis.isSelected();
+		settings.analyzeModulesInSingleEngine = analyzeModulesInSingleEngine.isSelected();
+		settings.analyzeOutOfProcess = analyzeOutOfProcess.isSelected();
+		settings.analyzeModuleInShards = analyzeModuleInShards.isSelected();
+		settings.keepWholeModuleForDetectors = keepWholeModuleForDetectors.isSelected();
 		settings.toolWindowToFront = toolWindowToFront.isSelected();
 	}
 
@@ -99,6 +145,13 @@ final class GeneralTab extends JPanel {
 		analyzeAfterCompile.setSelected(settings.analyzeAfterCompile);
 		analyzeAfterAutoMake.setSelected(settings.analyzeAfterAutoMake);
 		runInBackground.setSelected(settings.runInBackground);
+		analyzeModulesInParallel.setSelected(settings.analyzeModulesInParallel);
+		maxParallelAnalysis.setNumber(Math.max(0, Math.min(MAX_PARALLEL_ANALYSIS_LIMIT, settings.maxParallelAnalysis)));
+		incrementalAnalysis.setSelected(settings.incrementalAnalysis);
+		analyzeModulesInSingleEngine.setSelected(settings.analyzeModulesInSingleEngine);
+		analyzeOutOfProcess.setSelected(settings.analyzeOutOfProcess);
+		analyzeModuleInShards.setSelected(settings.analyzeModuleInShards);
+		keepWholeModuleForDetectors.setSelected(settings.keepWholeModuleForDetectors);
 		toolWindowToFront.setSelected(settings.toolWindowToFront);
 	}
 
@@ -119,6 +172,13 @@ final class GeneralTab extends JPanel {
 				"general.analyzeAfterCompile.title",
 				"general.analyzeAfterAutoMake.title",
 				"general.runInBackground.title",
+				"general.analyzeModulesInParallel.title",
+				"general.maxParallelAnalysis.title",
+				"general.incrementalAnalysis.title",
+				"general.analyzeModulesInSingleEngine.title",
+				"general.analyzeOutOfProcess.title",
+				"general.analyzeModuleInShards.title",
+				"general.keepWholeModuleForDetectors.title",
 				"general.toolWindowToFront.title",
 				// PluginTablePane
 				"plugins.title",
@@ -20,6 +20,8 @@
 package org.jetbrains.plugins.spotbugs.gui.toolwindow.view;
 
 import com.intellij.debugger.impl.DebuggerUtilsEx;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
@@ -34,17 +36,21 @@ import com.intellij.openapi.editor.markup.HighlighterTargetArea;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
 import com.intellij.openapi.editor.markup.TextAttributes;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.ui.JBColor;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.MethodAnnotation;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.concurrency.CancellablePromise;
 import org.jetbrains.plugins.spotbugs.common.EventDispatchThreadHelper;
 import org.jetbrains.plugins.spotbugs.common.ExtendedProblemDescriptor;
 import org.jetbrains.plugins.spotbugs.common.util.BugInstanceUtil;
@@ -52,8 +58,12 @@ import org.jetbrains.plugins.spotbugs.common.util.IdeaUtilImpl;
 import org.jetbrains.plugins.spotbugs.core.Bug;
 import org.jetbrains.plugins.spotbugs.core.FindBugsProject;
 import org.jetbrains.plugins.spotbugs.core.FindBugsResult;
+import org.jetbrains.plugins.spotbugs.core.ProblemCacheService;
 import org.jetbrains.plugins.spotbugs.gui.common.ScrollPaneFacade;
+import org.jetbrains.plugins.spotbugs.gui.common.TreeState;
+import org.jetbrains.plugins.spotbugs.gui.tree.BugFilterIndex;
 import org.jetbrains.plugins.spotbugs.gui.tree.GroupBy;
+import org.jetbrains.plugins.spotbugs.gui.tree.model.BugInstanceGroupNode;
 import org.jetbrains.plugins.spotbugs.gui.tree.model.BugInstanceNode;
 import org.jetbrains.plugins.spotbugs.gui.tree.model.GroupTreeModel;
 import org.jetbrains.plugins.spotbugs.gui.tree.model.RootNode;
@@ -66,10 +76,12 @@ import javax.swing.tree.TreePath;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @SuppressFBWarnings("SE_BAD_FIELD")
 @SuppressWarnings({"AnonymousInnerClass"})
@@ -85,6 +97,14 @@ public class BugTreePanel extends JPanel {
 
 	private final RootNode _visibleRootNode;
 	private final GroupTreeModel _treeModel;
+	@Nullable
+	private CancellablePromise<GroupTreeModel.BulkLoad> _regroup;
+	/**
+	 * All bugs of the result; the tree shows the ones accepted by {@link #_filter}.
+	 */
+	private final BugFilterIndex _index;
+	@NotNull
+	private BugFilterIndex.Filter _filter = BugFilterIndex.Filter.NONE;
 	private FindBugsResult result;
 	private GroupBy[] _groupBy;
 	private final ToolWindowPanel _parent;
@@ -105,21 +125,60 @@ public class BugTreePanel extends JPanel {
 		//noinspection ThisEscapedInObjectConstruction
 		_bugTree = new BugTree(_treeModel, this, _project);
 
+		_index = new BugFilterIndex();
+		add(new FilterBar(_index, this::setFilter), BorderLayout.NORTH);
+
 		final JScrollPane treeScrollPane = ScrollPaneFacade.createScrollPane();
 		treeScrollPane.setViewportView(_bugTree);
 		add(treeScrollPane, BorderLayout.CENTER);
 	}
 
 	void addNode(@NotNull final Bug bug) {
-		/*if(isHiddenBugGroup(bugInstance)) {
-			return;
-		}*/
+		_index.add(bug);
+		if (_filter.accepts(bug)) {
+			// the grouping of the model changes with the commit of a regroup, see regroupTree()
+			_treeModel.addNode(bug);
+		}
+	}
 
-		if (_treeModel.getGroupBy() != _groupBy) {
-			_treeModel.setGroupBy(_groupBy);
+	void addNodes(@NotNull final List<Bug> bugs) {
+		final List<Bug> visible = new ArrayList<>(bugs.size());
+		for (final Bug bug : bugs) {
+			_index.add(bug);
+			if (_filter.accepts(bug)) {
+				visible.add(bug);
+			}
 		}
+		_treeModel.addNodes(visible);
+	}
 
-		_treeModel.addNode(bug);
+	/**
+	 * Removes the bugs of the given classes and their tree nodes, see {@link ToolWindowPanel#analysisScope(Set)}.
+	 *
+	 * @param classNames top level class names
+	 * @return the removed bugs, including the ones hidden by the filter
+	 */
+	@NotNull
+	List<Bug> removeBugs(@NotNull final Set<String> classNames) {
+		EventDispatchThreadHelper.checkEDT();
+		final List<Bug> ret = _index.removeIf(bug -> classNames.contains(bug.getSortKey().getClassName()));
+		if (!ret.isEmpty()) {
+			// the visible tree still shows them while a regroup runs
+			_treeModel.removeNodes(ret);
+			_project.getService(ProblemCacheService.class).restartHighlighting();
+		}
+		if (_regroup != null) {
+			regroupTree(); // the running regroup adds the bugs published meanwhile by their index position
+		}
+		return ret;
+	}
+
+	private void setFilter(@NotNull final BugFilterIndex.Filter filter) {
+		EventDispatchThreadHelper.checkEDT();
+		if (!_filter.equals(filter)) {
+			_filter = filter;
+			regroupTree();
+		}
 	}
 
 	void updateRootNode(@Nullable final Integer classCount) {
@@ -133,7 +192,10 @@ public class BugTreePanel extends JPanel {
 	}
 
 	void clear() {
+		cancelRegroup();
 		result = null;
+		_index.clear();
+		_treeModel.setGroupBy(_groupBy);
 		_treeModel.clear();
 	}
 
@@ -290,13 +352,41 @@ public class BugTreePanel extends JPanel {
 
 	public void setResult(final FindBugsResult result) {
 		this.result = result;
+		if (result != null && _index.isEmpty()) {
+			// not streamed (imported), see addNodes(List)
+			indexResult(result);
+			if (!_filter.isNone()) {
+				regroupTree();
+			}
+		}
+	}
+
+	private void indexResult(@NotNull final FindBugsResult result) {
+		for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : result.getResults().entrySet()) {
+			Module module = null;
+			if (entry.getKey() instanceof FindBugsProject) {
+				module = ((FindBugsProject) entry.getKey()).getModule();
+			}
+			final Collection<BugInstance> instanceCollection = entry.getValue().getCollection();
+			if (instanceCollection != null) {
+				for (final BugInstance bugInstance : instanceCollection) {
+					if (bugInstance != null) {
+						_index.add(new Bug(
+								module,
+								entry.getValue(),
+								bugInstance
+						));
+					}
+				}
+			}
+		}
 	}
 
 	public FindBugsResult getResult() {
 		return result;
 	}
 
-	public Map<PsiFile, List<ExtendedProblemDescriptor>> getProblems() {
+	public Map<VirtualFile, List<ExtendedProblemDescriptor>> getProblems() {
 		return getTreeModel().getProblems();
 	}
 
@@ -312,40 +402,68 @@ public class BugTreePanel extends JPanel {
 		return _groupBy.clone();
 	}
 
+	/**
+	 * Builds the tree with the current grouping and filter on a background thread and swaps it in on the EDT.
+	 * A running regroup is canceled.
+	 */
 	private void regroupTree() {
 		EventDispatchThreadHelper.checkEDT();
-		if (result != null) {
-			boolean cleared = false;
-			for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : result.getResults().entrySet()) {
-				Module module = null;
-				if (entry.getKey() instanceof FindBugsProject) {
-					module = ((FindBugsProject) entry.getKey()).getModule();
-				}
-				final Collection<BugInstance> instanceCollection = entry.getValue().getCollection();
-				if (instanceCollection != null && !instanceCollection.isEmpty()) {
-					if (!cleared) {
-						cleared = true;
-						_treeModel.clear();
-					}
-					for (final BugInstance bugInstance : instanceCollection) {
-						if (bugInstance != null) {
-							addNode(new Bug(
-									module,
-									entry.getValue(),
-									bugInstance
-							));
-						}
+		cancelRegroup();
+		final List<Bug> bugs = _index.filter(_filter);
+		final int indexed = _index.size();
+		final GroupBy[] groupBy = _groupBy.clone();
+		_regroup = ReadAction.nonBlocking(() -> {
+					final GroupTreeModel.BulkLoad bulkLoad = _treeModel.beginBulkLoad(groupBy);
+					for (final Bug bug : bugs) {
+						ProgressManager.checkCanceled();
+						bulkLoad.add(bug);
 					}
-				}
-			}
-		} else {
-			// may be a analysis is running, we need to regroup existing nodes
-			final Collection<Bug> existing = _treeModel.getBugs();
-			_treeModel.clear();
-			for (final Bug bug : existing) {
-				addNode(bug);
+					return bulkLoad;
+				})
+				.expireWith(_parent)
+				.finishOnUiThread(ModalityState.defaultModalityState(), bulkLoad -> commitRegroup(bulkLoad, indexed))
+				.submit(AppExecutorUtil.getAppExecutorService());
+	}
+
+	private void commitRegroup(@NotNull final GroupTreeModel.BulkLoad bulkLoad, final int indexed) {
+		_regroup = null;
+		// bugs published while regrouping
+		for (int i = indexed; i < _index.size(); i++) {
+			final Bug bug = _index.getBug(i);
+			if (_filter.accepts(bug)) {
+				bulkLoad.add(bug);
 			}
 		}
+		final TreeState treeState = TreeState.create(_bugTree, BugTreePanel::getNodeKey);
+		final BugInstanceNode selected = _bugTree.getTreeHelper().getSelectedBugInstanceNode();
+		bulkLoad.commit();
+		_project.getService(ProblemCacheService.class).restartHighlighting();
+		treeState.restore();
+		if (selected != null) {
+			_bugTree.getTreeHelper().selectNode(selected.getBug());
+		}
+	}
+
+	private void cancelRegroup() {
+		if (_regroup != null) {
+			_regroup.cancel();
+			_regroup = null;
+		}
+	}
+
+	/**
+	 * Identifies group nodes across regroups, see {@link TreeState}.
+	 */
+	@NotNull
+	private static String getNodeKey(@NotNull final TreeNode node) {
+		if (node instanceof BugInstanceGroupNode) {
+			final BugInstanceGroupNode group = (BugInstanceGroupNode) node;
+			return group.getGroupBy() + ":" + group.getGroupName();
+		}
+		if (node instanceof BugInstanceNode) {
+			return ((BugInstanceNode) node).getBug().getInstance().getInstanceHash();
+		}
+		return "";
 	}
 
 	void adaptSize(final int width, final int height) {
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.gui.toolwindow.view;
+
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.components.JBTextField;
+import edu.umd.cs.findbugs.BugRankCategory;
+import edu.umd.cs.findbugs.BugRanker;
+import edu.umd.cs.findbugs.I18N;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.config.ProjectFilterSettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.spotbugs.gui.tree.BugFilterIndex;
+import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
+
+import javax.swing.ButtonGroup;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JButton;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.event.DocumentEvent;
+import java.awt.FlowLayout;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Live filter of the bug tree, applied to the {@link BugFilterIndex} without a new analysis.
+ */
+final class FilterBar extends JPanel {
+
+	@NotNull
+	private final BugFilterIndex _index;
+
+	@NotNull
+	private final Consumer<BugFilterIndex.Filter> _listener;
+
+	private final ComboBox _rankComboBox;
+	private final ComboBox _priorityComboBox;
+	private final JBTextField _packageField;
+	private final Set<String> _hiddenCategories = new HashSet<>();
+
+	@Nullable
+	private String _bugPattern;
+
+	FilterBar(@NotNull final BugFilterIndex index, @NotNull final Consumer<BugFilterIndex.Filter> listener) {
+		super(new FlowLayout(FlowLayout.LEFT, 4, 0));
+		_index = index;
+		_listener = listener;
+
+		final DefaultComboBoxModel rankModel = new DefaultComboBoxModel();
+		for (int rank = BugRanker.VISIBLE_RANK_MIN; rank <= BugRanker.VISIBLE_RANK_MAX; rank++) {
+			rankModel.addElement(new Item(rank, rank + " - " + BugRankCategory.getRank(rank)));
+		}
+		_rankComboBox = new ComboBox(rankModel);
+		_rankComboBox.setSelectedIndex(rankModel.getSize() - 1);
+		_rankComboBox.addActionListener(e -> fireFilterChanged());
+
+		final DefaultComboBoxModel priorityModel = new DefaultComboBoxModel();
+		priorityModel.addElement(new Item(Priorities.HIGH_PRIORITY, ProjectFilterSettings.HIGH_PRIORITY));
+		priorityModel.addElement(new Item(Priorities.NORMAL_PRIORITY, ProjectFilterSettings.MEDIUM_PRIORITY));
+		priorityModel.addElement(new Item(Priorities.LOW_PRIORITY, ProjectFilterSettings.LOW_PRIORITY));
+		priorityModel.addElement(new Item(Priorities.IGNORE_PRIORITY, ProjectFilterSettings.EXPERIMENTAL_PRIORITY));
+		_priorityComboBox = new ComboBox(priorityModel);
+		_priorityComboBox.setSelectedIndex(priorityModel.getSize() - 1);
+		_priorityComboBox.addActionListener(e -> fireFilterChanged());
+
+		final JButton categoriesButton = new JButton(ResourcesLoader.getString("filterBar.categories.text"));
+		categoriesButton.addActionListener(e -> createCategoriesPopup().show(categoriesButton, 0, categoriesButton.getHeight()));
+
+		final JButton bugPatternButton = new JButton(ResourcesLoader.getString("filterBar.bugPattern.text"));
+		bugPatternButton.addActionListener(e -> createBugPatternPopup().show(bugPatternButton, 0, bugPatternButton.getHeight()));
+
+		_packageField = new JBTextField(12);
+		_packageField.setToolTipText(ResourcesLoader.getString("filterBar.package.description"));
+		_packageField.getDocument().addDocumentListener(new DocumentAdapter() {
+			@Override
+			protected void textChanged(@NotNull final DocumentEvent e) {
+				fireFilterChanged();
+			}
+		});
+
+		final JLabel rankLabel = new JLabel(ResourcesLoader.getString("filterBar.rank.text"));
+		rankLabel.setToolTipText(ResourcesLoader.getString("filterBar.rank.description"));
+		final JLabel priorityLabel = new JLabel(ResourcesLoader.getString("filterBar.priority.text"));
+		priorityLabel.setToolTipText(ResourcesLoader.getString("filterBar.priority.description"));
+
+		add(rankLabel);
+		add(_rankComboBox);
+		add(priorityLabel);
+		add(_priorityComboBox);
+		add(categoriesButton);
+		add(bugPatternButton);
+		add(new JLabel(ResourcesLoader.getString("filterBar.package.text")));
+		add(_packageField);
+	}
+
+	@NotNull
+	private JPopupMenu createCategoriesPopup() {
+		final JPopupMenu ret = new JPopupMenu();
+		for (final String category : _index.getCategories()) {
+			final JCheckBoxMenuItem item = new JCheckBoxMenuItem(I18N.instance().getBugCategoryDescription(category), !_hiddenCategories.contains(category));
+			item.addActionListener(e -> {
+				if (item.isSelected()) {
+					_hiddenCategories.remove(category);
+				} else {
+					_hiddenCategories.add(category);
+				}
+				fireFilterChanged();
+			});
+			ret.add(item);
+		}
+		return ret;
+	}
+
+	@NotNull
+	private JPopupMenu createBugPatternPopup() {
+		final JPopupMenu ret = new JPopupMenu();
+		final ButtonGroup group = new ButtonGroup();
+		addBugPatternItem(ret, group, null, ResourcesLoader.getString("filterBar.bugPattern.all"));
+		for (final String bugPattern : _index.getBugPatterns()) {
+			addBugPatternItem(ret, group, bugPattern, bugPattern);
+		}
+		return ret;
+	}
+
+	private void addBugPatternItem(@NotNull final JPopupMenu popup, @NotNull final ButtonGroup group, @Nullable final String bugPattern, @NotNull final String text) {
+		final JRadioButtonMenuItem item = new JRadioButtonMenuItem(text, bugPattern == null ? _bugPattern == null : bugPattern.equals(_bugPattern));
+		item.addActionListener(e -> {
+			_bugPattern = bugPattern;
+			fireFilterChanged();
+		});
+		group.add(item);
+		popup.add(item);
+	}
+
+	@NotNull
+	BugFilterIndex.Filter getFilter() {
+		return new BugFilterIndex.Filter(
+				((Item) _rankComboBox.getSelectedItem()).value,
+				((Item) _priorityComboBox.getSelectedItem()).value,
+				_hiddenCategories,
+				_packageField.getText().trim(),
+				_bugPattern
+		);
+	}
+
+	private void fireFilterChanged() {
+		_listener.accept(getFilter());
+	}
+
+	private static class Item {
+		private final int value;
+		@NotNull
+		private final String text;
+
+		private Item(final int value, @NotNull final String text) {
+			this.value = value;
+			this.text = text;
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+}
@@ -20,7 +20,6 @@
 package org.jetbrains.plugins.spotbugs.gui.toolwindow.view;
 
 import com.intellij.CommonBundle;
-import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.diagnostic.IdeMessagePanel;
 import com.intellij.notification.*;
 import com.intellij.openapi.Disposable;
@@ -30,6 +29,7 @@ import com.intellij.openapi.editor.*;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.*;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.*;
 import com.intellij.psi.PsiFile;
 import com.intellij.ui.content.*;
@@ -37,7 +37,9 @@ import com.intellij.util.ui.JBUI;
 import org.jetbrains.annotations.*;
 import org.jetbrains.plugins.spotbugs.common.*;
 import org.jetbrains.plugins.spotbugs.common.util.FindBugsUtil;
+import org.jetbrains.plugins.spotbugs.core.Bug;
 import org.jetbrains.plugins.spotbugs.core.FindBugsResult;
+import org.jetbrains.plugins.spotbugs.core.ProblemCacheService;
 import org.jetbrains.plugins.spotbugs.gui.common.*;
 import org.jetbrains.plugins.spotbugs.messages.*;
 
@@ -50,7 +52,7 @@ import java.util.*;
 
 @SuppressWarnings({"HardCodedStringLiteral", "AnonymousInnerClass", "AnonymousInnerClassMayBeStatic"})
 @edu.umd.cs.findbugs.annotations.SuppressFBWarnings({"SE_BAD_FIELD"})
-public final class ToolWindowPanel extends JPanel implements AnalysisStateListener, Disposable {
+public final class ToolWindowPanel extends JPanel implements AnalysisStateListener, AnalysisScopeListener, Disposable {
 
 	private static final String NOTIFICATION_GROUP_ID_ANALYSIS_FINISHED = "SpotBugs: Analysis Finished";
 	private static final NotificationGroup NOTIFICATION_GROUP_ANALYSIS_FINISHED = NotificationGroup.toolWindowGroup(
@@ -77,19 +79,47 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 	private boolean _isPreviewLayoutEnabled;
 	private transient PreviewPanel _previewPanel;
 	private FindBugsResult result;
+	/**
+	 * Top level class names covered by {@link #result}, {@code null} if unknown (f. e. imported).
+	 */
+	@Nullable
+	private Set<String> _resultScope;
+	/**
+	 * Scope of the running analysis, see {@link #analysisScope(Set)}.
+	 */
+	@Nullable
+	private Set<String> _runScope;
+	/**
+	 * The running analysis may be merged into {@link #result}, the clear is deferred until its scope is known.
+	 */
+	private boolean _clearPending;
+	/**
+	 * The running analysis is merged into {@link #result}.
+	 */
+	private boolean _merging;
+	/**
+	 * Bugs of {@link #result} replaced by the merging analysis, put back if it is aborted, see {@link #abortMerge()}.
+	 */
+	@Nullable
+	private FindBugsResult _replacedResult;
+	@Nullable
+	private List<Bug> _replacedBugs;
 
 	public ToolWindowPanel(@NotNull final Project project) {
 		_project = project;
 		installListeners();
 		initGui();
 		MessageBusManager.subscribeAnalysisState(project, this, this);
+		MessageBusManager.subscribe(project, this, AnalysisScopeListener.TOPIC, this);
 		MessageBusManager.subscribe(project, this, ClearListener.TOPIC, () -> {
 			ToolWindowPanel.this.clear();
-			DaemonCodeAnalyzer.getInstance(_project).restart();
 		});
-		MessageBusManager.subscribe(project, this, NewBugListener.TOPIC, (bug, analyzedClassCount) -> {
-			_bugTreePanel.addNode(bug);
-			_bugTreePanel.updateRootNode(analyzedClassCount);
+		MessageBusManager.subscribe(project, this, NewBugListener.TOPIC, (bugs, analyzedClassCount) -> {
+			flushPendingClear();
+			_bugTreePanel.addNodes(bugs);
+			if (!_merging) { // the merged result keeps its class count
+				_bugTreePanel.updateRootNode(analyzedClassCount);
+			}
 		});
 	}
 
@@ -204,7 +234,7 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 		return result;
 	}
 
-	public Map<PsiFile, List<ExtendedProblemDescriptor>> getProblems() {
+	public Map<VirtualFile, List<ExtendedProblemDescriptor>> getProblems() {
 		return _bugTreePanel.getProblems();
 	}
 
@@ -217,10 +247,40 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 
 	@Override
 	public void analysisStarted() {
-		EditorFactory.getInstance().refreshAllEditors();
-		DaemonCodeAnalyzer.getInstance(_project).restart();
 		updateLayout(false);
-		clear();
+		abortMerge(); // superseded
+		_runScope = null;
+		if (result != null && _resultScope != null) {
+			_clearPending = true;
+		} else {
+			clear();
+		}
+	}
+
+	/**
+	 * Merges the running analysis into the current result if it analyzes a subset of the classes of the result,
+	 * so only the bugs of the analyzed classes are replaced. Otherwise the result is cleared.
+	 */
+	@Override
+	public void analysisScope(@Nullable final Set<String> classNames) {
+		_runScope = classNames;
+		if (_clearPending) {
+			_clearPending = false;
+			if (classNames != null && _resultScope != null && _resultScope.containsAll(classNames)) {
+				_merging = true;
+				_replacedResult = result.removeBugs(classNames);
+				_replacedBugs = _bugTreePanel.removeBugs(classNames);
+			} else {
+				clear();
+			}
+		}
+	}
+
+	private void flushPendingClear() {
+		if (_clearPending) {
+			_clearPending = false;
+			clear();
+		}
 	}
 
 	@Override
@@ -229,11 +289,46 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 
 	@Override
 	public void analysisAborted() {
-		_bugTreePanel.setResult(null);
+		// an analysis aborted before its scope is known or while merging keeps the previous result
+		if (!_clearPending && !_merging) {
+			_bugTreePanel.setResult(null);
+		}
+		_clearPending = false;
+		abortMerge();
+		_runScope = null;
+	}
+
+	/**
+	 * Puts back the bugs replaced by the merging analysis and removes the bugs it reported so far.
+	 */
+	private void abortMerge() {
+		if (_merging && _runScope != null && _replacedResult != null && _replacedBugs != null) {
+			_bugTreePanel.removeBugs(_runScope);
+			result.merge(_replacedResult);
+			_bugTreePanel.addNodes(_replacedBugs);
+			_bugTreePanel.updateRootNode(result.getAnalyzedClassCount());
+			_project.getService(ProblemCacheService.class).restartHighlighting();
+		}
+		_merging = false;
+		_replacedResult = null;
+		_replacedBugs = null;
 	}
 
 	@Override
-	public void analysisFinished(@NotNull final FindBugsResult result, @Nullable final Throwable error) {
+	public void analysisFinished(@NotNull final FindBugsResult runResult, @Nullable final Throwable error) {
+		flushPendingClear();
+		final FindBugsResult result;
+		if (_merging) {
+			this.result.merge(runResult);
+			result = this.result;
+		} else {
+			result = runResult;
+			_resultScope = _runScope;
+		}
+		_merging = false;
+		_replacedResult = null;
+		_replacedBugs = null;
+		_runScope = null;
 		_bugTreePanel.setResult(result);
 		final Integer analyzedClassCount = result.getAnalyzedClassCount();
 		_bugTreePanel.updateRootNode(analyzedClassCount);
@@ -291,8 +386,7 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 							.notify(_project);
 		}
 
-		EditorFactory.getInstance().refreshAllEditors();
-		DaemonCodeAnalyzer.getInstance(_project).restart();
+		_project.getService(ProblemCacheService.class).restartHighlighting();
 	}
 
 	private ComponentListener createComponentListener() {
@@ -330,8 +424,13 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 
 	private void clear() {
 		result = null;
+		_resultScope = null;
+		_merging = false;
+		_replacedResult = null;
+		_replacedBugs = null;
 		_bugTreePanel.clear();
 		_bugTreePanel.updateRootNode(null);
+		_project.getService(ProblemCacheService.class).restartHighlighting();
 	}
 
 	@Override
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.gui.tree;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugRanker;
+import edu.umd.cs.findbugs.Priorities;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.spotbugs.core.Bug;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Columnar index of all reported bugs: each bug gets a position, and each column value (category, rank, priority,
+ * package, bug pattern) a bitmap of the positions having it. A {@link Filter} is applied by combining bitmaps,
+ * so re-filtering does not touch the bugs themselves. Append only until {@link #clear()}; EDT confined.
+ */
+public final class BugFilterIndex {
+
+	private static final int MAX_RANK = BugRanker.VISIBLE_RANK_MAX;
+	private static final int MAX_PRIORITY = Priorities.IGNORE_PRIORITY;
+
+	@NotNull
+	private final List<Bug> _bugs = new ArrayList<>();
+
+	@NotNull
+	private final BitSet[] _byRank = newBitSets(MAX_RANK + 1);
+
+	@NotNull
+	private final BitSet[] _byPriority = newBitSets(MAX_PRIORITY + 1);
+
+	@NotNull
+	private final Map<String, BitSet> _byCategory = new HashMap<>();
+
+	@NotNull
+	private final Map<String, BitSet> _byPackage = new HashMap<>();
+
+	@NotNull
+	private final Map<String, BitSet> _byBugPattern = new HashMap<>();
+
+	public void add(@NotNull final Bug bug) {
+		final int position = _bugs.size();
+		_bugs.add(bug);
+		final BugSortKey key = bug.getSortKey();
+		_byRank[getRank(bug)].set(position);
+		_byPriority[getPriority(bug)].set(position);
+		_byCategory.computeIfAbsent(key.getCategory(), k -> new BitSet()).set(position);
+		_byPackage.computeIfAbsent(key.getPackageName(), k -> new BitSet()).set(position);
+		_byBugPattern.computeIfAbsent(bug.getInstance().getType(), k -> new BitSet()).set(position);
+	}
+
+	public void clear() {
+		_bugs.clear();
+		for (final BitSet bitSet : _byRank) {
+			bitSet.clear();
+		}
+		for (final BitSet bitSet : _byPriority) {
+			bitSet.clear();
+		}
+		_byCategory.clear();
+		_byPackage.clear();
+		_byBugPattern.clear();
+	}
+
+	/**
+	 * Rebuilds the index without the matching bugs if there are any, the positions of the remaining bugs change.
+	 *
+	 * @return the removed bugs, in the order of {@link #add(Bug)}
+	 */
+	@NotNull
+	public List<Bug> removeIf(@NotNull final Predicate<Bug> predicate) {
+		final List<Bug> ret = new ArrayList<>();
+		final List<Bug> bugs = new ArrayList<>(_bugs.size());
+		for (final Bug bug : _bugs) {
+			if (predicate.test(bug)) {
+				ret.add(bug);
+			} else {
+				bugs.add(bug);
+			}
+		}
+		if (!ret.isEmpty()) {
+			clear();
+			for (final Bug bug : bugs) {
+				add(bug);
+			}
+		}
+		return ret;
+	}
+
+	public int size() {
+		return _bugs.size();
+	}
+
+	public boolean isEmpty() {
+		return _bugs.isEmpty();
+	}
+
+	/**
+	 * @param position position of a bug, in the order of {@link #add(Bug)}
+	 */
+	@NotNull
+	public Bug getBug(final int position) {
+		return _bugs.get(position);
+	}
+
+	@NotNull
+	public SortedSet<String> getCategories() {
+		return new TreeSet<>(_byCategory.keySet());
+	}
+
+	@NotNull
+	public SortedSet<String> getBugPatterns() {
+		return new TreeSet<>(_byBugPattern.keySet());
+	}
+
+	/**
+	 * @return the bugs accepted by the filter, in the order of {@link #add(Bug)}
+	 */
+	@NotNull
+	public List<Bug> filter(@NotNull final Filter filter) {
+		final BitSet visible = new BitSet(_bugs.size());
+		for (int rank = 0; rank <= Math.min(filter.maxRank, MAX_RANK); rank++) {
+			visible.or(_byRank[rank]);
+		}
+		final BitSet byPriority = new BitSet(_bugs.size());
+		for (int priority = 0; priority <= Math.min(filter.maxPriority, MAX_PRIORITY); priority++) {
+			byPriority.or(_byPriority[priority]);
+		}
+		visible.and(byPriority);
+		for (final String category : filter.hiddenCategories) {
+			final BitSet byCategory = _byCategory.get(category);
+			if (byCategory != null) {
+				visible.andNot(byCategory);
+			}
+		}
+		if (!filter.packagePrefix.isEmpty()) {
+			final BitSet byPackage = new BitSet(_bugs.size());
+			for (final Map.Entry<String, BitSet> entry : _byPackage.entrySet()) {
+				if (entry.getKey().startsWith(filter.packagePrefix)) {
+					byPackage.or(entry.getValue());
+				}
+			}
+			visible.and(byPackage);
+		}
+		if (filter.bugPattern != null) {
+			final BitSet byBugPattern = _byBugPattern.get(filter.bugPattern);
+			if (byBugPattern != null) {
+				visible.and(byBugPattern);
+			} else {
+				visible.clear();
+			}
+		}
+
+		final List<Bug> ret = new ArrayList<>(visible.cardinality());
+		for (int i = visible.nextSetBit(0); i >= 0; i = visible.nextSetBit(i + 1)) {
+			ret.add(_bugs.get(i));
+		}
+		return ret;
+	}
+
+	private static int getRank(@NotNull final Bug bug) {
+		return Math.max(0, Math.min(bug.getInstance().getBugRank(), MAX_RANK));
+	}
+
+	private static int getPriority(@NotNull final Bug bug) {
+		return Math.max(0, Math.min(bug.getSortKey().getPriority(), MAX_PRIORITY));
+	}
+
+	@NotNull
+	private static BitSet[] newBitSets(final int size) {
+		final BitSet[] ret = new BitSet[size];
+		for (int i = 0; i < size; i++) {
+			ret[i] = new BitSet();
+		}
+		return ret;
+	}
+
+	/**
+	 * What the filter bar shows; the default shows everything.
+	 */
+	public static final class Filter {
+
+		public static final Filter NONE = new Filter(MAX_RANK, MAX_PRIORITY, Collections.emptySet(), "", null);
+
+		private final int maxRank;
+		private final int maxPriority;
+
+		@NotNull
+		private final Set<String> hiddenCategories;
+
+		@NotNull
+		private final String packagePrefix;
+
+		@Nullable
+		private final String bugPattern;
+
+		/**
+		 * @param maxRank          least severe rank to show (1 is most severe)
+		 * @param maxPriority      least confident priority to show, see {@link Priorities}
+		 * @param hiddenCategories bug categories not to show
+		 * @param packagePrefix    shows only packages starting with it, empty for all
+		 * @param bugPattern       shows only this bug pattern type, {@code null} for all
+		 */
+		public Filter(final int maxRank, final int maxPriority, @NotNull final Set<String> hiddenCategories, @NotNull final String packagePrefix, @Nullable final String bugPattern) {
+			this.maxRank = maxRank;
+			this.maxPriority = maxPriority;
+			this.hiddenCategories = Collections.unmodifiableSet(new HashSet<>(hiddenCategories));
+			this.packagePrefix = packagePrefix;
+			this.bugPattern = bugPattern;
+		}
+
+		/**
+		 * Same result as {@link BugFilterIndex#filter(Filter)}, for a single bug.
+		 */
+		public boolean accepts(@NotNull final Bug bug) {
+			final BugInstance instance = bug.getInstance();
+			return getRank(bug) <= maxRank &&
+					getPriority(bug) <= maxPriority &&
+					!hiddenCategories.contains(bug.getSortKey().getCategory()) &&
+					bug.getSortKey().getPackageName().startsWith(packagePrefix) &&
+					(bugPattern == null || bugPattern.equals(instance.getType()));
+		}
+
+		public boolean isNone() {
+			return equals(NONE);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Filter)) return false;
+			final Filter other = (Filter) o;
+			return maxRank == other.maxRank &&
+					maxPriority == other.maxPriority &&
+					hiddenCategories.equals(other.hiddenCategories) &&
+					packagePrefix.equals(other.packagePrefix) &&
+					Objects.equals(bugPattern, other.bugPattern);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(maxRank, maxPriority, hiddenCategories, packagePrefix, bugPattern);
+		}
+	}
+}
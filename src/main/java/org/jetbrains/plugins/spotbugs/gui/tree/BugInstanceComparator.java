@@ -19,8 +19,6 @@
  */
 package org.jetbrains.plugins.spotbugs.gui.tree;
 
-import edu.umd.cs.findbugs.BugPattern;
-import edu.umd.cs.findbugs.BugRankCategory;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.spotbugs.core.Bug;
 
@@ -46,7 +44,7 @@ public class BugInstanceComparator {
 		}
 
 		static String getClassName(@NotNull final Bug bugInstance) {
-			return bugInstance.getInstance().getPrimaryClass().getClassName().split("\\$")[0];
+			return bugInstance.getSortKey().getClassName();
 		}
 	}
 
@@ -68,7 +66,7 @@ public class BugInstanceComparator {
 		}
 
 		static String getPackageName(@NotNull final Bug bug) {
-			return bug.getInstance().getPrimaryClass().getPackageName();
+			return bug.getSortKey().getPackageName();
 		}
 	}
 
@@ -90,8 +88,7 @@ public class BugInstanceComparator {
 		}
 
 		static String getTypeDescription(@NotNull final Bug bug) {
-			final BugPattern bugPattern = bug.getInstance().getBugPattern();
-			return bugPattern.getAbbrev();
+			return bug.getSortKey().getType();
 		}
 	}
 
@@ -113,8 +110,7 @@ public class BugInstanceComparator {
 		}
 
 		static String getCategory(@NotNull final Bug bugInstance) {
-			final BugPattern bugPattern = bugInstance.getInstance().getBugPattern();
-			return bugPattern.getCategory();
+			return bugInstance.getSortKey().getCategory();
 		}
 	}
 
@@ -136,8 +132,7 @@ public class BugInstanceComparator {
 		}
 
 		static String getShortDescr(@NotNull final Bug bug) {
-			final BugPattern bugPattern = bug.getInstance().getBugPattern();
-			return bugPattern.getShortDescription();
+			return bug.getSortKey().getShortDescription();
 		}
 	}
 
@@ -149,11 +144,7 @@ public class BugInstanceComparator {
 	static class BugInstancePriorityComparator implements Comparator<Bug> {
 		@Override
 		public int compare(@NotNull final Bug o1, @NotNull final Bug o2) {
-			return getPriorityString(o1).compareTo(getPriorityString(o2));
-		}
-
-		static String getPriorityString(@NotNull final Bug bug) {
-			return bug.getInstance().getPriorityString();
+			return Integer.compare(o1.getSortKey().getPriority(), o2.getSortKey().getPriority());
 		}
 	}
 
@@ -165,7 +156,7 @@ public class BugInstanceComparator {
 	private static class BugInstanceBugRankComparator implements Comparator<Bug> {
 		@Override
 		public int compare(@NotNull final Bug o1, @NotNull final Bug o2) {
-			return BugRankCategory.getRank(o1.getInstance().getBugRank()).compareTo(BugRankCategory.getRank(o2.getInstance().getBugRank()));
+			return o1.getSortKey().getRank().compareTo(o2.getSortKey().getRank());
 		}
 	}
 
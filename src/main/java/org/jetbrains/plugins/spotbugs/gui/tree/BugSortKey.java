@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.gui.tree;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugPattern;
+import edu.umd.cs.findbugs.BugRankCategory;
+import edu.umd.cs.findbugs.I18N;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.spotbugs.core.Bug;
+
+import java.util.Locale;
+
+/**
+ * Sort and group keys of a bug, computed once per {@link Bug} (see {@link Bug#getSortKey()}) instead of on
+ * every compare. Strings derived per bug are interned, so equal keys of different bugs are the same instance.
+ */
+public final class BugSortKey {
+
+	/**
+	 * Top level class name, without the nested class part.
+	 */
+	@NotNull
+	private final String className;
+
+	@NotNull
+	private final String packageName;
+
+	@NotNull
+	private final String type;
+
+	@NotNull
+	private final String category;
+
+	@NotNull
+	private final String shortDescription;
+
+	@NotNull
+	private final String priorityString;
+
+	private final int priority;
+
+	@NotNull
+	private final BugRankCategory rank;
+
+	@NotNull
+	private final String categoryDescription;
+
+	@NotNull
+	private final String typeDescription;
+
+	public BugSortKey(@NotNull final BugInstance instance) {
+		if (!Locale.ENGLISH.equals(Locale.getDefault())) {
+			Locale.setDefault(Locale.ENGLISH);
+		}
+		final BugPattern bugPattern = instance.getBugPattern();
+		className = instance.getPrimaryClass().getClassName().split("\\$")[0].intern();
+		packageName = instance.getPrimaryClass().getPackageName().intern();
+		type = bugPattern.getAbbrev();
+		category = bugPattern.getCategory();
+		shortDescription = bugPattern.getShortDescription();
+		priorityString = instance.getPriorityString();
+		priority = instance.getPriority();
+		rank = BugRankCategory.getRank(instance.getBugRank());
+		categoryDescription = I18N.instance().getBugCategoryDescription(category);
+		typeDescription = I18N.instance().getBugTypeDescription(type);
+	}
+
+	@NotNull
+	public String getClassName() {
+		return className;
+	}
+
+	@NotNull
+	public String getPackageName() {
+		return packageName;
+	}
+
+	@NotNull
+	public String getType() {
+		return type;
+	}
+
+	@NotNull
+	public String getCategory() {
+		return category;
+	}
+
+	@NotNull
+	public String getShortDescription() {
+		return shortDescription;
+	}
+
+	@NotNull
+	public String getPriorityString() {
+		return priorityString;
+	}
+
+	/**
+	 * @return the priority, lower is more important
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	@NotNull
+	public BugRankCategory getRank() {
+		return rank;
+	}
+
+	@NotNull
+	public String getGroupName(@NotNull final GroupBy groupBy) {
+		switch (groupBy) {
+			case BugCategory:
+				return categoryDescription;
+			case BugShortDescription:
+				return shortDescription;
+			case BugType:
+				return typeDescription;
+			case Class:
+				return className;
+			case Package:
+				return packageName;
+			case Priority:
+				return priorityString;
+			case BugRank:
+				return rank.toString();
+			default:
+				throw new IllegalStateException("Unknown group order: " + groupBy);
+		}
+	}
+}
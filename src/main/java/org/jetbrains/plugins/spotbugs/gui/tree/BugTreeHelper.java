@@ -144,7 +144,7 @@ public final class BugTreeHelper {
 		}
 
 		@SuppressWarnings("unchecked")
-		final List<VisitableTreeNode> childList = (List<VisitableTreeNode>) node.getParent().getChildsList();
+		final List<VisitableTreeNode> childList = new ArrayList<>((List<VisitableTreeNode>) node.getParent().getChildsList());
 		Collections.reverse(childList);
 		for (final VisitableTreeNode childNode : childList) {
 			//noinspection ObjectEquality
@@ -227,6 +227,16 @@ public final class BugTreeHelper {
 		}
 	}
 
+	public void selectNode(final Bug bug) {
+		final AbstractTreeNode<VisitableTreeNode> node = findTreeNodeByBugInstance(bug);
+		if (node != null) {
+			final TreePath path = getPath(node);
+			tree.setExpandsSelectedPaths(true);
+			tree.setSelectionPath(path);
+			scrollPathToVisible(path);
+		}
+	}
+
 	@Nullable
 	private AbstractTreeNode<VisitableTreeNode> findTreeNodeByBugInstance(final Bug bug) {
 		return ((GroupTreeModel) tree.getModel()).findNodeByBugInstance(bug);
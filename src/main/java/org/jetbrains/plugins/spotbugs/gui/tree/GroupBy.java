@@ -19,15 +19,12 @@
  */
 package org.jetbrains.plugins.spotbugs.gui.tree;
 
-import edu.umd.cs.findbugs.BugRankCategory;
-import edu.umd.cs.findbugs.I18N;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.spotbugs.core.Bug;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
 
 public enum GroupBy {
 
@@ -57,45 +54,11 @@ public enum GroupBy {
 	}
 
 	public static String getBugCategory(@NotNull final Bug bug) {
-		return BugInstanceComparator.BugInstanceCategoryComparator.getCategory(bug);
+		return bug.getSortKey().getCategory();
 	}
 
 	public static String getGroupName(final GroupBy groupBy, @NotNull final Bug bug) {
-
-		if (!Locale.ENGLISH.equals(Locale.getDefault())) {
-			Locale.setDefault(Locale.ENGLISH);
-		}
-
-		final String groupName;
-		switch (groupBy) {
-
-			case BugCategory:
-				final String category = BugInstanceComparator.BugInstanceCategoryComparator.getCategory(bug);
-				groupName = I18N.instance().getBugCategoryDescription(category);
-				break;
-			case BugShortDescription:
-				groupName = BugInstanceComparator.BugInstanceShortDescrComparator.getShortDescr(bug);
-				break;
-			case BugType:
-				final String type = BugInstanceComparator.BugInstanceTypeComparator.getTypeDescription(bug);
-				groupName = I18N.instance().getBugTypeDescription(type);
-				break;
-			case Class:
-				groupName = BugInstanceComparator.BugInstanceClassComparator.getClassName(bug);
-				break;
-			case Package:
-				groupName = BugInstanceComparator.BugInstancePackageComparator.getPackageName(bug);
-				break;
-			case Priority:
-				groupName = BugInstanceComparator.BugInstancePriorityComparator.getPriorityString(bug);
-				break;
-			case BugRank:
-				groupName = BugRankCategory.getRank(bug.getInstance().getBugRank()).toString();
-				break;
-			default:
-				throw new IllegalStateException("Unknown group order: " + groupBy);
-		}
-		return groupName;
+		return bug.getSortKey().getGroupName(groupBy);
 	}
 
 	/**
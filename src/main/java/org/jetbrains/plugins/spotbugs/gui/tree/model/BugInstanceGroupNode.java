@@ -22,7 +22,6 @@ package org.jetbrains.plugins.spotbugs.gui.tree.model;
 import com.intellij.openapi.project.Project;
 import com.intellij.ui.JBColor;
 import edu.umd.cs.findbugs.BugRankCategory;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import icons.PluginIcons;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -30,8 +29,6 @@ import org.jetbrains.plugins.spotbugs.core.Bug;
 import org.jetbrains.plugins.spotbugs.gui.tree.BugInstanceComparator;
 import org.jetbrains.plugins.spotbugs.gui.tree.GroupBy;
 import org.jetbrains.plugins.spotbugs.gui.tree.NodeVisitor;
-import org.jetbrains.plugins.spotbugs.gui.tree.RecurseNodeVisitor;
-import org.jetbrains.plugins.spotbugs.gui.tree.RecurseNodeVisitor.RecurseVisitCriteria;
 import org.jetbrains.plugins.spotbugs.gui.tree.view.MaskIcon;
 
 import javax.swing.Icon;
@@ -45,9 +42,24 @@ import java.util.Locale;
 
 public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNode> implements VisitableTreeNode {
 
+	/**
+	 * Child groups.
+	 */
 	private final List<VisitableTreeNode> _children;
+
+	/**
+	 * Bugs of the group, sorted. Their tree nodes are created on first access, see {@link #getBugNode(int)}.
+	 */
+	private final List<Bug> _bugs;
+
+	/**
+	 * Tree nodes of {@link #_bugs} at the same index, {@code null} if not created yet.
+	 * The list itself is created when the first node is accessed.
+	 */
+	@Nullable
+	private List<BugInstanceNode> _bugNodes;
+
 	private final Bug bug;
-	private final RecurseNodeVisitor<BugInstanceGroupNode> _recurseNodeVisitor = new RecurseNodeVisitor<>(this);
 	private final Project _project;
 
 	/**
@@ -66,6 +78,7 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 		_project = project;
 		this.bug = bug;
 		_children = new ArrayList<>();
+		_bugs = new ArrayList<>();
 		_groupBy = groupBy;
 		_groupName = groupName;
 		_simpleName = groupName;
@@ -83,25 +96,190 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 
 	@Override
 	public void addChild(final VisitableTreeNode node) {
-		_children.add(node);
 		if (node instanceof BugInstanceNode && node.isLeaf()) {
-			_children.sort(new ChildComparator());
-			incrementMemberCount();
-			TreeNode treeNode = getParent();
-			while (treeNode instanceof BugInstanceGroupNode) {
-				((BugInstanceGroupNode) treeNode).incrementMemberCount();
-				treeNode = treeNode.getParent();
+			final BugInstanceNode bugNode = (BugInstanceNode) node;
+			final int index = addBug(bugNode.getBug(), true);
+			getBugNodes().set(index, bugNode);
+		} else {
+			_children.add(node);
+		}
+	}
+
+	@Override
+	public void removeChild(final VisitableTreeNode node) {
+		if (node instanceof BugInstanceNode) {
+			removeBug(((BugInstanceNode) node).getBug());
+		} else {
+			_children.remove(node);
+		}
+	}
+
+	/**
+	 * @param sorted {@code true} to insert at the sorted position (after equal bugs),
+	 *               {@code false} to append only, {@link #sortChildren()} must be called when the bulk load ends
+	 * @return index of the bug within the bugs of this group
+	 */
+	int addBug(@NotNull final Bug bug, final boolean sorted) {
+		final int index = sorted ? upperBound(bug) : _bugs.size();
+		_bugs.add(index, bug);
+		if (_bugNodes != null) {
+			_bugNodes.add(index, null);
+		}
+		incrementMemberCount();
+		TreeNode treeNode = getParent();
+		while (treeNode instanceof BugInstanceGroupNode) {
+			((BugInstanceGroupNode) treeNode).incrementMemberCount();
+			treeNode = treeNode.getParent();
+		}
+		return index;
+	}
+
+	/**
+	 * Binary search like {@link #findBugNode(Bug)}, the bugs must be sorted.
+	 *
+	 * @return {@code false} if the bug is not in this group
+	 */
+	boolean removeBug(@NotNull final Bug bug) {
+		for (int i = lowerBound(bug); i < _bugs.size() && BUG_COMPARATOR.compare(_bugs.get(i), bug) == 0; i++) {
+			if (_bugs.get(i).equals(bug)) {
+				_bugs.remove(i);
+				if (_bugNodes != null) {
+					_bugNodes.remove(i);
+				}
+				decrementMemberCount();
+				TreeNode treeNode = getParent();
+				while (treeNode instanceof BugInstanceGroupNode) {
+					((BugInstanceGroupNode) treeNode).decrementMemberCount();
+					treeNode = treeNode.getParent();
+				}
+				return true;
 			}
 		}
+		return false;
 	}
 
+	/**
+	 * Stable, so the result is the same as sorted insertion one by one. Created nodes are kept.
+	 */
+	void sortChildren() {
+		if (_bugNodes == null) {
+			_bugs.sort(BUG_COMPARATOR);
+			return;
+		}
+		final List<Integer> order = new ArrayList<>(_bugs.size());
+		for (int i = 0; i < _bugs.size(); i++) {
+			order.add(i);
+		}
+		order.sort((a, b) -> BUG_COMPARATOR.compare(_bugs.get(a), _bugs.get(b)));
+		final List<Bug> bugs = new ArrayList<>(_bugs.size());
+		final List<BugInstanceNode> bugNodes = new ArrayList<>(_bugs.size());
+		for (final int i : order) {
+			bugs.add(_bugs.get(i));
+			bugNodes.add(_bugNodes.get(i));
+		}
+		_bugs.clear();
+		_bugs.addAll(bugs);
+		_bugNodes = bugNodes;
+	}
+
+	private int upperBound(@NotNull final Bug bug) {
+		int low = 0;
+		int high = _bugs.size();
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (BUG_COMPARATOR.compare(_bugs.get(mid), bug) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int lowerBound(@NotNull final Bug bug) {
+		int low = 0;
+		int high = _bugs.size();
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (BUG_COMPARATOR.compare(_bugs.get(mid), bug) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@NotNull
+	private List<BugInstanceNode> getBugNodes() {
+		if (_bugNodes == null) {
+			_bugNodes = new ArrayList<>(Collections.nCopies(_bugs.size(), null));
+		}
+		return _bugNodes;
+	}
+
+	@NotNull
+	private BugInstanceNode getBugNode(final int index) {
+		final List<BugInstanceNode> bugNodes = getBugNodes();
+		BugInstanceNode ret = bugNodes.get(index);
+		if (ret == null) {
+			ret = new BugInstanceNode(_bugs.get(index), this, _project);
+			bugNodes.set(index, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Binary search for the sorted position, then a scan over the bugs sorting equal.
+	 */
 	@Nullable
-	public BugInstanceGroupNode findChildNode(final Bug bug, final int depth, final String groupName) {
-		if (Bug.equalsBugType(this.bug, bug) && Bug.equalsBugClass(this.bug, bug) && depth == _depthFromRoot && groupName.equals(_groupName)) {
-			return this;
+	public BugInstanceNode findBugNode(@NotNull final Bug bug) {
+		for (int i = lowerBound(bug); i < _bugs.size() && BUG_COMPARATOR.compare(_bugs.get(i), bug) == 0; i++) {
+			if (_bugs.get(i).equals(bug)) {
+				return getBugNode(i);
+			}
 		}
-		final RecurseVisitCriteria criteria = new RecurseVisitCriteria(bug, depth, groupName);
-		return _recurseNodeVisitor.findChildNode(criteria);
+		return null;
+	}
+
+	/**
+	 * @return the number of child groups, they come before the bugs in the children of this group
+	 */
+	public int getGroupCount() {
+		return _children.size();
+	}
+
+	/**
+	 * The bugs in the order of their children, without creating their tree nodes like {@link #getChildAt(int)}.
+	 */
+	@NotNull
+	public List<Bug> getBugs() {
+		return Collections.unmodifiableList(_bugs);
+	}
+
+	@Override
+	public VisitableTreeNode getChildAt(final int childIndex) {
+		if (childIndex < _children.size()) {
+			return _children.get(childIndex);
+		}
+		return getBugNode(childIndex - _children.size());
+	}
+
+	@Override
+	public int getChildCount() {
+		return _children.size() + _bugs.size();
+	}
+
+	@Override
+	public int getIndex(final TreeNode node) {
+		if (node instanceof BugInstanceNode) {
+			if (_bugNodes == null) {
+				return -1;
+			}
+			final int index = _bugNodes.indexOf(node);
+			return index >= 0 ? _children.size() + index : -1;
+		}
+		return _children.indexOf(node);
 	}
 
 	@Override
@@ -119,6 +297,7 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 				ret.addAll(ret.size(), bugs);
 			}
 		}
+		ret.addAll(_bugs);
 		return ret;
 	}
 
@@ -160,9 +339,20 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 		return list;
 	}
 
+	/**
+	 * Creates the nodes of all bugs of the group, the returned list is read only if the group has bugs.
+	 */
 	@Override
 	public List<VisitableTreeNode> getChildsList() {
-		return _children;
+		if (_bugs.isEmpty()) {
+			return _children;
+		}
+		final List<VisitableTreeNode> ret = new ArrayList<>(getChildCount());
+		ret.addAll(_children);
+		for (int i = 0; i < _bugs.size(); i++) {
+			ret.add(getBugNode(i));
+		}
+		return Collections.unmodifiableList(ret);
 	}
 
 	@Override
@@ -177,13 +367,17 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 
 	@Override
 	public boolean isLeaf() {
-		return _children.isEmpty();
+		return _children.isEmpty() && _bugs.isEmpty();
 	}
 
 	private void incrementMemberCount() {
 		++_memberCount;
 	}
 
+	private void decrementMemberCount() {
+		--_memberCount;
+	}
+
 	public Bug getBug() {
 		return bug;
 	}
@@ -230,18 +424,10 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 	public String toString() {
 		return "BugInstanceGroupNode" +
 					 "{_childs=" + _children +
+					 ", _bugs=" + _bugs.size() +
 					 ", bug=" + bug +
-					 ", _recurseNodeVisitor=" + _recurseNodeVisitor +
 					 '}';
 	}
 
-	private static class ChildComparator implements Comparator<TreeNode> {
-		@SuppressFBWarnings(value = "BC_UNCONFIRMED_CAST")
-		public int compare(final TreeNode a, final TreeNode b) {
-			if (!(a instanceof BugInstanceNode) || !(b instanceof BugInstanceNode)) {
-				throw new IllegalArgumentException("argument not instance of BugInstanceNode.");
-			}
-			return BugInstanceComparator.getBugInstanceClassComparator().compare(((BugInstanceNode) a).getBug(), ((BugInstanceNode) b).getBug());
-		}
-	}
+	private static final Comparator<Bug> BUG_COMPARATOR = BugInstanceComparator.getBugInstanceClassComparator();
 }
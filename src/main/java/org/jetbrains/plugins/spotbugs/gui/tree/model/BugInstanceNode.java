@@ -68,7 +68,7 @@ public class BugInstanceNode extends AbstractTreeNode<VisitableTreeNode> impleme
 		setParent(parent);
 		_childs = new ArrayList<VisitableTreeNode>();
 		_bugInstance = bug.getInstance();
-		_simpleName = _bugInstance.getMessageWithoutPrefix();
+		_simpleName = getSimpleName(bug);
 
 		setTooltip(_simpleName);
 		setCollapsedIcon(_collapsedIcon);
@@ -76,6 +76,15 @@ public class BugInstanceNode extends AbstractTreeNode<VisitableTreeNode> impleme
 	}
 
 
+	/**
+	 * @return the name of the tree node of the bug, also if the node is not created yet
+	 */
+	@NotNull
+	public static String getSimpleName(@NotNull final Bug bug) {
+		return bug.getInstance().getMessageWithoutPrefix();
+	}
+
+
 	public ProblemDescriptor getProblem() {
 		return _problem;
 	}
@@ -89,14 +98,18 @@ public class BugInstanceNode extends AbstractTreeNode<VisitableTreeNode> impleme
 	@Nullable
 	public PsiFile getPsiFile() {
 		if (_file == null) {
-			final PsiClass psiClass = IdeaUtilImpl.findJavaPsiClass(_project, getBug().getModule(), getSourcePath());
-			if (psiClass != null) {
-				_file = psiClass.getContainingFile();
-			}
+			_file = findPsiFile(_project, bug);
 		}
 		return _file;
 	}
 
+	@Nullable
+	static PsiFile findPsiFile(final Project project, @NotNull final Bug bug) {
+		final String sourcePath = bug.getInstance().getPrimaryClass().getSourceLines().getSourcePath();
+		final PsiClass psiClass = IdeaUtilImpl.findJavaPsiClass(project, bug.getModule(), sourcePath);
+		return psiClass != null ? psiClass.getContainingFile() : null;
+	}
+
 	@NotNull
 	public Bug getBug() {
 		return bug;
@@ -21,35 +21,38 @@ package org.jetbrains.plugins.spotbugs.gui.tree.model;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.psi.PsiFile;
+import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.spotbugs.common.EventDispatchThreadHelper;
 import org.jetbrains.plugins.spotbugs.common.ExtendedProblemDescriptor;
-import org.jetbrains.plugins.spotbugs.common.util.BugInstanceUtil;
+import org.jetbrains.plugins.spotbugs.common.util.IdeaUtilImpl;
 import org.jetbrains.plugins.spotbugs.core.Bug;
 import org.jetbrains.plugins.spotbugs.core.ProblemCacheService;
-import org.jetbrains.plugins.spotbugs.gui.tree.BugInstanceComparator;
 import org.jetbrains.plugins.spotbugs.gui.tree.GroupBy;
 
 import javax.annotation.Nullable;
+import javax.swing.tree.TreeNode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
-public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNode> implements Grouper.GrouperCallback<Bug> {
+public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNode> {
 
 	private static final Logger LOGGER = Logger.getInstance(GroupTreeModel.class.getName());
 
 	private GroupBy[] _groupBy;
-	private final transient Map<String, Map<Integer, List<BugInstanceGroupNode>>> _groups;
-	private transient Grouper<Bug> _grouper;
-	private int _bugCount;
-	private final transient Map<PsiFile, List<ExtendedProblemDescriptor>> _problems;
+
+	/**
+	 * Content of the visible tree.
+	 */
+	@NotNull
+	private final transient Content _content;
 
 	@NotNull
 	private final transient Project _project;
@@ -59,176 +62,241 @@ public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNod
 		_root = root;
 		_project = project;
 		_groupBy = groupBy.clone();
-		_groups = new HashMap<>();
-		_problems = project.getService(ProblemCacheService.class).getProblems();
+		_content = new Content(project.getService(ProblemCacheService.class).getProblems(), null);
 	}
 
 	Project getProject() {
 		return _project;
 	}
 
-	private void addGroupIfAbsent(final String groupNameKey, final int depth, final BugInstanceGroupNode groupNode) {
-		if (!_groups.containsKey(groupNameKey)) {
-			final Map<Integer, List<BugInstanceGroupNode>> map = new HashMap<>();
-			_groups.put(groupNameKey, map);
-			final List<BugInstanceGroupNode> groupNodes = addGroupIfAbsentImpl(groupNameKey, depth, groupNode);
-			map.put(depth, groupNodes);
-		} else {
-			addGroupIfAbsentImpl(groupNameKey, depth, groupNode);
-		}
+	@SuppressWarnings({"ReturnOfCollectionOrArrayField"})
+	public Map<VirtualFile, List<ExtendedProblemDescriptor>> getProblems() {
+		return _content.problems;
 	}
 
-	@NotNull
-	private List<BugInstanceGroupNode> addGroupIfAbsentImpl(final String groupNameKey, final int depth, final BugInstanceGroupNode groupNode) {
-		final Map<Integer, List<BugInstanceGroupNode>> map = _groups.get(groupNameKey);
-
-		final List<BugInstanceGroupNode> list = map.computeIfAbsent(depth, k -> new ArrayList<>());
-		list.add(groupNode);
-		return list;
+	/**
+	 * Maps the bug to its source file by path, no PSI is created, the element is resolved once the file is opened.
+	 */
+	private void addProblem(@NotNull final Content content, @NotNull final Bug bug) {
+		final String sourcePath = bug.getInstance().getPrimaryClass().getSourceLines().getSourcePath();
+		final VirtualFile virtualFile = IdeaUtilImpl.findSourceFile(_project, bug.getModule(), sourcePath);
+		if (virtualFile != null) {
+			final ExtendedProblemDescriptor element = new ExtendedProblemDescriptor(_project, virtualFile, bug);
+			content.problems.computeIfAbsent(virtualFile, k -> new ArrayList<>()).add(element);
+		}
 	}
 
-	@SuppressWarnings({"ReturnOfCollectionOrArrayField"})
-	public Map<PsiFile, List<ExtendedProblemDescriptor>> getProblems() {
-		return _problems;
+	public int getBugCount() {
+		EventDispatchThreadHelper.checkEDT();
+		return _content.bugCount;
 	}
 
-	@SuppressWarnings({"MethodMayBeStatic", "AnonymousInnerClass"})
-	private void addProblem(final BugInstanceNode leaf) {
-		final PsiFile psiFile = leaf.getPsiFile();
-		_addProblem(psiFile, leaf);
+	public void addNode(@NotNull final Bug bug) {
+		EventDispatchThreadHelper.checkEDT();
+		group(bug, _content, _groupBy);
 	}
 
-	private void _addProblem(@Nullable final PsiFile value, final BugInstanceNode leaf) {
-		if (value != null) {
-			final ExtendedProblemDescriptor element = new ExtendedProblemDescriptor(value, leaf.getBug());
-			if (_problems.containsKey(value)) {
-				_problems.get(value).add(element);
-			} else {
-				final List<ExtendedProblemDescriptor> list = new ArrayList<>();
-				list.add(element);
-				_problems.put(value, list);
+	/**
+	 * Adds a batch of bugs and fires one structure change per affected top level group instead of one per bug.
+	 */
+	public void addNodes(@NotNull final Collection<Bug> bugs) {
+		EventDispatchThreadHelper.checkEDT();
+		final Set<TreeNode> changed = new HashSet<>();
+		_content.changed = changed;
+		_content.unsorted = new HashSet<>();
+		try {
+			for (final Bug bug : bugs) {
+				group(bug, _content, _groupBy);
+			}
+		} finally {
+			_content.changed = null;
+			_content.sortUnsorted();
+		}
+		if (changed.contains(_root)) {
+			nodeStructureChanged(_root); // new top level group
+		} else {
+			final Set<TreeNode> topLevelGroups = new HashSet<>();
+			for (final TreeNode node : changed) {
+				topLevelGroups.add(getTopLevelGroup(node));
+			}
+			for (final TreeNode group : topLevelGroups) {
+				nodeStructureChanged((VisitableTreeNode) group);
 			}
 		}
 	}
 
-	public int getBugCount() {
+	/**
+	 * Removes a batch of bugs, their problems and the groups left empty, and fires one structure change per
+	 * affected top level group like {@link #addNodes(Collection)}. Bugs not in the tree are ignored.
+	 */
+	public void removeNodes(@NotNull final Collection<Bug> bugs) {
 		EventDispatchThreadHelper.checkEDT();
-		return _bugCount;
-	}
-
-	@SuppressWarnings({"LockAcquiredButNotSafelyReleased"})
-	public void addNode(@NotNull final Bug bug) {
-		/*if(isHiddenBugGroup(bugInstance)) {
+		final Set<Bug> removed = new HashSet<>();
+		final Set<TreeNode> changed = new HashSet<>();
+		for (final Bug bug : bugs) {
+			final BugInstanceGroupNode group = _content.bugGroups.remove(bug);
+			if (group != null && group.removeBug(bug)) {
+				_content.bugCount--;
+				removed.add(bug);
+				changed.add(removeEmptyGroups(group));
+			}
+		}
+		if (removed.isEmpty()) {
 			return;
-		}*/
-		_bugCount++;
-		group(bug);
+		}
+		removeProblems(removed);
+		if (changed.contains(_root)) {
+			nodeStructureChanged(_root); // removed top level group
+		} else {
+			final Set<TreeNode> topLevelGroups = new HashSet<>();
+			for (final TreeNode node : changed) {
+				topLevelGroups.add(getTopLevelGroup(node));
+			}
+			for (final TreeNode group : topLevelGroups) {
+				nodeStructureChanged((VisitableTreeNode) group);
+			}
+		}
 	}
 
-	private void group(@NotNull final Bug bug) {
-		if (_grouper == null) {
-			_grouper = new Grouper<>(this);
+	/**
+	 * @return the deepest group still in the tree, the root if the top level group was removed
+	 */
+	@NotNull
+	private VisitableTreeNode removeEmptyGroups(@NotNull final BugInstanceGroupNode group) {
+		final List<String> groupNames = new ArrayList<>();
+		for (TreeNode node = group; node instanceof BugInstanceGroupNode; node = node.getParent()) {
+			groupNames.add(0, ((BugInstanceGroupNode) node).getGroupName());
+		}
+		final String[] path = groupNames.toArray(new String[0]);
+		VisitableTreeNode ret = group;
+		for (int depth = path.length; ret instanceof BugInstanceGroupNode && ret.isLeaf(); depth--) {
+			final VisitableTreeNode parent = (VisitableTreeNode) ret.getParent();
+			removeChild(parent, (BugInstanceGroupNode) ret);
+			_content.groups.remove(new GroupPath(path, depth));
+			ret = parent;
 		}
-		final List<Comparator<Bug>> groupComparators = BugInstanceComparator.getGroupComparators(_groupBy);
-		_grouper.group(bug, groupComparators);
+		return ret;
 	}
 
-	@Override
-	public void startGroup(final Bug member, final int depth) {
-		EventDispatchThreadHelper.assertInEDTorADT();
-
-		final GroupBy groupBy = _groupBy[depth];
-		final String groupName = GroupBy.getGroupName(groupBy, member);
-		final BugInstanceGroupNode groupNode = new BugInstanceGroupNode(groupBy, groupName, _root, member, depth, _project);
-
-		addGroupIfAbsent(Arrays.toString(BugInstanceUtil.getGroupPath(member, depth, _groupBy)), depth, groupNode);
-
-		_root.addChild(groupNode);
-		nodeStructureChanged(_root);
-
-		startSubGroup(depth + 1, member, member);
+	/**
+	 * Replaces the problem lists instead of modifying them, they may be read by a background anchor resolution.
+	 */
+	private void removeProblems(@NotNull final Set<Bug> bugs) {
+		final Iterator<Map.Entry<VirtualFile, List<ExtendedProblemDescriptor>>> it = _content.problems.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<VirtualFile, List<ExtendedProblemDescriptor>> entry = it.next();
+			if (entry.getValue().stream().anyMatch(descriptor -> bugs.contains(descriptor.getBug()))) {
+				final List<ExtendedProblemDescriptor> remaining = new ArrayList<>(entry.getValue());
+				remaining.removeIf(descriptor -> bugs.contains(descriptor.getBug()));
+				if (remaining.isEmpty()) {
+					it.remove();
+				} else {
+					entry.setValue(remaining);
+				}
+			}
+		}
 	}
 
-	@Override
-	public void startSubGroup(final int depth, final Bug member, final Bug parent) {
-		EventDispatchThreadHelper.assertInEDTorADT();
-
-		String groupName = GroupBy.getGroupName(_groupBy[depth - 1], member);
-		final BugInstanceGroupNode parentGroup = _root.findChildNode(parent, depth - 1, groupName);
-
-		//final BugInstanceGroupNode parentGroup = ((RootNode) _root).getChildByBugInstance(parent, depth - 1);
-		//final BugInstanceGroupNode parentGroup = ((RootNode) _root).getChildByGroupName(GroupBy.getGroupName(_groupBy[depth - 1], parent), depth - 1);
-		//final BugInstanceGroupNode parentGroup = _groups.get(depth-1 + Arrays.toString(getGroupPath(member)));
+	@NotNull
+	private TreeNode getTopLevelGroup(@NotNull final TreeNode node) {
+		TreeNode ret = node;
+		while (ret.getParent() != null && ret.getParent() != _root) {
+			ret = ret.getParent();
+		}
+		return ret;
+	}
 
-		if (parentGroup != null) {
-			final GroupBy groupBy = _groupBy[depth];
-			groupName = GroupBy.getGroupName(groupBy, member);
-			final BugInstanceGroupNode childGroup = new BugInstanceGroupNode(groupBy, groupName, parentGroup, member, depth, _project);
+	/**
+	 * Starts to build a new tree content, replacing the current one on {@link BulkLoad#commit()}.
+	 * The grouping is the current one.
+	 */
+	@NotNull
+	public BulkLoad beginBulkLoad() {
+		EventDispatchThreadHelper.checkEDT();
+		return new BulkLoad(_groupBy);
+	}
 
-			addGroupIfAbsent(Arrays.toString(BugInstanceUtil.getGroupPath(parent, depth, _groupBy)), depth, childGroup);
-			//addGroupIfAbsent(GroupBy.getGroupName(_groupBy[0], parent), depth, childGroup);
+	/**
+	 * Like {@link #beginBulkLoad()}, but with the given grouping which becomes the current one on commit.
+	 * May be called on any thread.
+	 */
+	@NotNull
+	public BulkLoad beginBulkLoad(@NotNull final GroupBy[] groupBy) {
+		return new BulkLoad(groupBy);
+	}
 
-			parentGroup.addChild(childGroup);
-			nodeStructureChanged(parentGroup);
+	/**
+	 * Looks up (or creates) the group node of each level by its group path, one hash lookup per level.
+	 */
+	private void group(@NotNull final Bug bug, @NotNull final Content content, @NotNull final GroupBy[] groupBy) {
+		final String[] groupNames = getGroupNames(bug, groupBy);
+		VisitableTreeNode parent = _root;
+		BugInstanceGroupNode group = null;
+		for (int depth = 0; depth < groupBy.length; depth++) {
+			final GroupPath path = new GroupPath(groupNames, depth + 1);
+			group = content.groups.get(path);
+			if (group == null) {
+				group = new BugInstanceGroupNode(groupBy[depth], groupNames[depth], parent, bug, depth, _project);
+				content.groups.put(path, group);
+				if (parent == _root && content.topLevelGroups != null) {
+					content.topLevelGroups.add(group); // attached on commit
+				} else {
+					addChild(parent, group);
+					structureChanged(content, parent);
+				}
+			}
+			parent = group;
+		}
 
-			if (depth < _groupBy.length - 1) {
-				startSubGroup(depth + 1, member, member);
-			} else {
-				addToGroup(depth, member, member);
+		if (group != null) {
+			content.bugCount++;
+			// the leaf node is created when the group is expanded
+			group.addBug(bug, content.unsorted == null);
+			content.bugGroups.put(bug, group);
+			if (content.unsorted != null) {
+				content.unsorted.add(group);
 			}
+			addProblem(content, bug);
+			structureChanged(content, group);
 		} else {
-			String message =
-					"parentGroup can not be null: groupName = " + groupName + "; depth = " + depth + "; parent = " + parent;
-			LOGGER.error(new NullPointerException(message));
+			LOGGER.error("No group by configured");
 		}
-
-
 	}
 
-	@Override
-	public void addToGroup(final int depth, final Bug member, final Bug parent) {
-		EventDispatchThreadHelper.checkEDT();
-
-		final String groupName = GroupBy.getGroupName(_groupBy[depth], member);
-		final BugInstanceGroupNode parentGroup = _root.findChildNode(parent, depth, groupName);
-
-		if (parentGroup != null) {
-			final BugInstanceNode childNode = new BugInstanceNode(member, parentGroup, _project);
-			parentGroup.addChild(childNode);
-			addProblem(childNode);
-			nodeStructureChanged(parentGroup);
+	private void structureChanged(@NotNull final Content content, @NotNull final VisitableTreeNode node) {
+		if (content.topLevelGroups != null) {
+			return; // detached, see BulkLoad
+		}
+		if (content.changed != null) {
+			content.changed.add(node);
 		} else {
-			//noinspection ThrowableInstanceNeverThrown
-			LOGGER.error("parentSubGroup can not be null. ", new NullPointerException());
+			nodeStructureChanged(node);
 		}
 	}
 
-	@Override
-	public Comparator<Bug> currentGroupComparatorChain(final int depth) {
-		return BugInstanceComparator.getComparatorChain(depth, getGroupBy());
+	private static void addChild(@NotNull final VisitableTreeNode parent, @NotNull final BugInstanceGroupNode child) {
+		if (parent instanceof RootNode) {
+			((RootNode) parent).addChild(child);
+		} else {
+			((BugInstanceGroupNode) parent).addChild(child);
+		}
 	}
 
-	@Override
-	public List<Bug> availableGroups(final int depth, @NotNull final Bug bug) {
-    final List<Bug> result = new ArrayList<>();
-
-		//final GroupBy groupBy = _groupBy[0];
-		//final String groupName = GroupBy.getGroupName(groupBy, bug);
-		final String groupName = Arrays.toString(BugInstanceUtil.getGroupPath(bug, depth, _groupBy));
-
-		if (_groups.containsKey(groupName)) {
-			final Map<Integer, List<BugInstanceGroupNode>> map = _groups.get(groupName);
-
-			if (map.containsKey(depth)) {
-				final List<BugInstanceGroupNode> groupNodes = map.get(depth);
-
-				for (final BugInstanceGroupNode node : groupNodes) {
-					result.add(node.getBug());
-				}
-			}
+	private static void removeChild(@NotNull final VisitableTreeNode parent, @NotNull final BugInstanceGroupNode child) {
+		if (parent instanceof RootNode) {
+			((RootNode) parent).removeChild(child);
+		} else {
+			((BugInstanceGroupNode) parent).removeChild(child);
 		}
+	}
 
-		return result;
+	@NotNull
+	private static String[] getGroupNames(@NotNull final Bug bug, @NotNull final GroupBy[] groupBy) {
+		final String[] ret = new String[groupBy.length];
+		for (int i = 0; i < groupBy.length; i++) {
+			ret[i] = GroupBy.getGroupName(groupBy[i], bug);
+		}
+		return ret;
 	}
 
 	public void setGroupBy(final GroupBy[] groupBy) {
@@ -242,10 +310,10 @@ public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNod
 	public void clear() {
 		EventDispatchThreadHelper.checkEDT();
 
-		//_sortedCollection.clear();
-		_bugCount = 0;
-		_groups.clear();
-		_problems.clear();
+		_content.bugCount = 0;
+		_content.groups.clear();
+		_content.bugGroups.clear();
+		_content.problems.clear();
 		_root.removeAllChilds();
 		nodeStructureChanged(_root);
 		reload();
@@ -254,27 +322,8 @@ public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNod
 
 	@Nullable
 	public BugInstanceNode findNodeByBugInstance(final Bug bug) {
-		final String[] fullGroupPath = BugInstanceUtil.getFullGroupPath(bug, _groupBy);
-		final String[] groupNameKey = BugInstanceUtil.getGroupPath(bug, fullGroupPath.length - 1, _groupBy);
-
-		final Map<Integer, List<BugInstanceGroupNode>> map = _groups.get(Arrays.toString(groupNameKey));
-		if (map != null) {
-			for (final Entry<Integer, List<BugInstanceGroupNode>> entry : map.entrySet()) {
-
-				final List<BugInstanceGroupNode> groupNodes = entry.getValue();
-				for (final BugInstanceGroupNode groupNode : groupNodes) {
-
-					final List<VisitableTreeNode> bugInstanceNodes = groupNode.getChildsList();
-					for (final VisitableTreeNode node : bugInstanceNodes) {
-						final Bug otherBug = ((BugInstanceNode) node).getBug();
-						if (otherBug.equals(bug)) {
-							return (BugInstanceNode) node;
-						}
-					}
-				}
-			}
-		}
-		return null;
+		final BugInstanceGroupNode groupNode = _content.bugGroups.get(bug);
+		return groupNode != null ? groupNode.findBugNode(bug) : null;
 	}
 
 	@NotNull
@@ -346,4 +395,143 @@ public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNod
 	protected Class<VisitableTreeNode> getNodeClass() {
 		return VisitableTreeNode.class;
 	}
+
+	/**
+	 * Transaction to replace the tree content: {@link #add(Bug)} builds the group hierarchy detached from the tree
+	 * (any thread, in a read action because of the source file lookup), {@link #commit()} attaches it with one structure
+	 * change of the root.
+	 */
+	public final class BulkLoad {
+
+		@NotNull
+		private final GroupBy[] groupBy;
+
+		@NotNull
+		private final Content content;
+
+		private boolean committed;
+
+		private BulkLoad(@NotNull final GroupBy[] groupBy) {
+			this.groupBy = groupBy.clone();
+			content = new Content(new HashMap<>(), new ArrayList<>());
+			content.unsorted = new HashSet<>();
+		}
+
+		public void add(@NotNull final Bug bug) {
+			group(bug, content, groupBy);
+		}
+
+		public void addAll(@NotNull final Collection<Bug> bugs) {
+			for (final Bug bug : bugs) {
+				add(bug);
+			}
+		}
+
+		public void commit() {
+			EventDispatchThreadHelper.checkEDT();
+			if (committed) {
+				throw new IllegalStateException("Already committed");
+			}
+			committed = true;
+			content.sortUnsorted();
+
+			_groupBy = groupBy;
+			_content.bugCount = content.bugCount;
+			_content.groups.clear();
+			_content.groups.putAll(content.groups);
+			_content.bugGroups.clear();
+			_content.bugGroups.putAll(content.bugGroups);
+			// shared with the problem cache, which reads it from any thread: a file of the new content is never missing
+			_content.problems.putAll(content.problems);
+			_content.problems.keySet().retainAll(content.problems.keySet());
+			_root.removeAllChilds();
+			for (final BugInstanceGroupNode group : content.topLevelGroups) {
+				_root.addChild(group);
+			}
+			nodeStructureChanged(_root);
+		}
+	}
+
+	/**
+	 * Groups, problems and bug count of a tree, either the visible one or one of a {@link BulkLoad}.
+	 */
+	private static final class Content {
+
+		@NotNull
+		private final Map<GroupPath, BugInstanceGroupNode> groups;
+
+		/**
+		 * Last level group of each bug, see {@link #findNodeByBugInstance(Bug)}.
+		 */
+		@NotNull
+		private final Map<Bug, BugInstanceGroupNode> bugGroups;
+
+		@NotNull
+		private final Map<VirtualFile, List<ExtendedProblemDescriptor>> problems;
+
+		/**
+		 * Top level groups of a bulk load, attached to the root on commit. {@code null} for the visible tree.
+		 */
+		@Nullable
+		private final List<BugInstanceGroupNode> topLevelGroups;
+
+		/**
+		 * Groups with appended but not yet sorted children, {@code null} for sorted insertion.
+		 */
+		@Nullable
+		private Set<BugInstanceGroupNode> unsorted;
+
+		/**
+		 * Nodes with structure changes not fired yet, {@code null} to fire immediately.
+		 */
+		@Nullable
+		private Set<TreeNode> changed;
+
+		private int bugCount;
+
+		private Content(@NotNull final Map<VirtualFile, List<ExtendedProblemDescriptor>> problems, @Nullable final List<BugInstanceGroupNode> topLevelGroups) {
+			groups = new HashMap<>();
+			bugGroups = new HashMap<>();
+			this.problems = problems;
+			this.topLevelGroups = topLevelGroups;
+		}
+
+		private void sortUnsorted() {
+			if (unsorted != null) {
+				for (final BugInstanceGroupNode group : unsorted) {
+					group.sortChildren();
+				}
+				unsorted = null;
+			}
+		}
+	}
+
+	/**
+	 * Group names from the top level down to a depth, with the hash code computed once.
+	 */
+	private static final class GroupPath {
+
+		@NotNull
+		private final String[] names;
+
+		private final int hashCode;
+
+		GroupPath(@NotNull final String[] groupNames, final int length) {
+			names = Arrays.copyOf(groupNames, length);
+			hashCode = Arrays.hashCode(names);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) return true;
+			if (!(o instanceof GroupPath)) return false;
+			final GroupPath other = (GroupPath) o;
+			return hashCode == other.hashCode && Arrays.equals(names, other.names);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
 }
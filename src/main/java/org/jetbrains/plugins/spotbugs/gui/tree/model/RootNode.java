@@ -21,11 +21,8 @@ package org.jetbrains.plugins.spotbugs.gui.tree.model;
 
 import com.intellij.ui.JBColor;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.spotbugs.core.Bug;
 import org.jetbrains.plugins.spotbugs.gui.tree.NodeVisitor;
-import org.jetbrains.plugins.spotbugs.gui.tree.RecurseNodeVisitor;
-import org.jetbrains.plugins.spotbugs.gui.tree.RecurseNodeVisitor.RecurseVisitCriteria;
 import org.jetbrains.plugins.spotbugs.gui.tree.view.MaskIcon;
 import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
 
@@ -42,7 +39,6 @@ public class RootNode extends AbstractTreeNode<VisitableTreeNode> implements Vis
 	private int _bugCount;
 	private int _classesCount;
 	private final List<VisitableTreeNode> _children;
-	private final RecurseNodeVisitor<RootNode> _recurseNodeVisitor = new RecurseNodeVisitor<>(this);
 
 
 	public RootNode(final String simpleName) {
@@ -75,12 +71,6 @@ public class RootNode extends AbstractTreeNode<VisitableTreeNode> implements Vis
 		return "";
 	}
 
-	@Nullable
-	BugInstanceGroupNode findChildNode(final Bug bug, final int depth, final String groupName) {
-		final RecurseVisitCriteria criteria = new RecurseVisitCriteria(bug, depth, groupName);
-		return _recurseNodeVisitor.findChildNode(criteria);
-	}
-
 	@NotNull
 	List<Bug> getAllChildBugs() {
     final List<Bug> ret = new ArrayList<>();
@@ -104,7 +94,6 @@ public class RootNode extends AbstractTreeNode<VisitableTreeNode> implements Vis
 					 "{_bugCount=" + _bugCount +
 					 ", _classesCount=" + _classesCount +
 					 ", _childs=" + _children +
-					 ", _recurseNodeVisitor=" + _recurseNodeVisitor +
 					 '}';
 	}
 
@@ -24,10 +24,12 @@ import com.intellij.openapi.wm.IdeFocusManager;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.JBList;
 import com.intellij.ui.scale.JBUIScale;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import icons.PluginIcons;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.spotbugs.gui.common.ToolBarButton;
+import org.jetbrains.plugins.spotbugs.common.EventDispatchThreadHelper;
 import org.jetbrains.plugins.spotbugs.common.util.GuiUtil;
 import org.jetbrains.plugins.spotbugs.gui.common.AbstractBar;
 import org.jetbrains.plugins.spotbugs.gui.common.ScrollPaneFacade;
@@ -77,6 +79,8 @@ import java.awt.event.MouseMotionAdapter;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Stack;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -109,6 +113,11 @@ abstract class QuickSearch<E> {
 	private Color _foregroundColor = JBColor.BLACK;
 	private Color _backgroundColor = new JBColor(new Color(255, 255, 200), JBColor.LIGHT_GRAY);
 	private final Stack<String> _recentSearches;
+	@Nullable
+	private Future<?> _pendingFind;
+	private int _findGeneration;
+
+	private static final int CANCELED = -2;
 
 
 	QuickSearch() {
@@ -153,6 +162,13 @@ abstract class QuickSearch<E> {
 	abstract List<?> getElementsCache();
 
 
+	/**
+	 * @return texts of all elements, by index; must not change afterwards because it is searched on a pooled thread
+	 */
+	@NotNull
+	abstract List<String> getElementTexts();
+
+
 	@Nullable
 	abstract E getElementAt(int index);
 
@@ -288,6 +304,7 @@ abstract class QuickSearch<E> {
 
 	@SuppressWarnings({"AssignmentToNull"})
 	protected void hidePopup() {
+		cancelFind();
 		_searchActivated = false;
 		if (_layerPane != null && _popup != null) {
 			hideRecentSearchesPopup();
@@ -417,51 +434,74 @@ abstract class QuickSearch<E> {
 	}
 
 
-	private int find(final String text) {
-		final int count = getElementCount();
-		if (count == 0) {
-			return -1;
+	/**
+	 * Matches the search text against a snapshot of the element texts on a pooled thread.
+	 * A later search or hiding the popup cancels it; {@code onFound} is called on the EDT with the index or -1.
+	 */
+	private void findInBackground(final String text, @NotNull final IntConsumer onFound) {
+		cancelFind();
+		final int generation = _findGeneration;
+		final Pattern pattern = compilePattern(text);
+		final List<String> texts = getElementTexts();
+		if (getCursor() == -1 && !texts.isEmpty()) {
+			setCursor(0);
 		}
+		final int cursor = getCursor();
+		_pendingFind = AppExecutorUtil.getAppExecutorService().submit(() -> {
+			final int found = find(texts, pattern, cursor);
+			if (found != CANCELED) {
+				EventDispatchThreadHelper.invokeLater(() -> {
+					if (generation == _findGeneration) {
+						_pendingFind = null;
+						if (found != -1) {
+							addToRecentSearches(text);
+						}
+						onFound.accept(found);
+					}
+				});
+			}
+		});
+	}
 
-		// find from cursor
-		int cursor = getCursor();
-		if (cursor == -1 && count > 0) {
-			cursor = 0;
-			setCursor(cursor);
-		}
 
-		for (int i = cursor; i < count; i++) {
-			final E element = getElementAt(i);
-			if (compare(element, text)) {
-				addToRecentSearches(text);
-				return i;
-			}
+	private void cancelFind() {
+		_findGeneration++;
+		if (_pendingFind != null) {
+			_pendingFind.cancel(true);
+			//noinspection AssignmentToNull
+			_pendingFind = null;
 		}
+	}
+
 
-		// if not found, search from begin to cursor
-		for (int i = 0; i < cursor; i++) {
-			final E element = getElementAt(i);
-			if (compare(element, text)) {
-				//setCursor(i);
-				addToRecentSearches(text);
+	/**
+	 * @return index of the first match from the cursor on (wrapping around), -1 if none, {@link #CANCELED} if interrupted
+	 */
+	private static int find(@NotNull final List<String> texts, @Nullable final Pattern pattern, final int cursor) {
+		final int count = texts.size();
+		for (int n = 0; n < count; n++) {
+			if ((n & 1023) == 0 && Thread.currentThread().isInterrupted()) {
+				return CANCELED;
+			}
+			final int i = (cursor + n) % count;
+			if (matches(pattern, texts.get(i))) {
 				return i;
 			}
 		}
-
 		return -1;
-
 	}
 
 
 	private int findNextOccurrence(final String text) {
-		final int count = getElementCount();
+		final List<String> texts = getElementTexts();
+		final int count = texts.size();
 		if (count == 0) {
 			return !text.isEmpty() ? -1 : 0;
 		}
 
+		final Pattern pattern = compilePattern(text);
 		for (int i = getCursor() + 1; i < count; i++) {
-			final E element = getElementAt(i);
-			if (compare(element, text)) {
+			if (matches(pattern, texts.get(i))) {
 				return i;
 			}
 		}
@@ -471,14 +511,15 @@ abstract class QuickSearch<E> {
 
 
 	private int findPreviousOccurrence(final String text) {
-		final int count = getElementCount();
+		final List<String> texts = getElementTexts();
+		final int count = texts.size();
 		if (count == 0) {
 			return !text.isEmpty() ? -1 : 0;
 		}
 
+		final Pattern pattern = compilePattern(text);
 		for (int i = getCursor() - 1; i >= 0; i--) {
-			final E element = getElementAt(i);
-			if (compare(element, text)) {
+			if (matches(pattern, texts.get(i))) {
 				return i;
 			}
 		}
@@ -487,45 +528,25 @@ abstract class QuickSearch<E> {
 	}
 
 
-	protected boolean compare(final E element, final String searchText) {
-		if (searchText == null || searchText.trim().isEmpty()) {
-			return true;
-		}
-
-		final String text = convertElementToString(element);
-		if (text == null) {
-			return false;
-		}
-
+	/**
+	 * Compiled once per search, {@code null} if the search text is not a valid pattern (nothing matches).
+	 * Finds the search text anywhere in the element text, ignoring case; this includes the matches at the start.
+	 */
+	@Nullable
+	private static Pattern compilePattern(final String searchText) {
 		try {
-			//_pattern = Pattern.compile(isFromStart() ? "^" + s : s, isCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE);
-			Pattern pattern = Pattern.compile('^' + searchText + '^', 0);
-			boolean found = pattern.matcher(text).find();
-			if (found) {
-				return found;
-			}
-
-			pattern = Pattern.compile('^' + searchText, 0);
-			found = pattern.matcher(text).find();
-			if (found) {
-				return found;
-			}
-
-			pattern = Pattern.compile('^' + searchText, Pattern.CASE_INSENSITIVE);
-			found = pattern.matcher(text).find();
-			if (found) {
-				return found;
-			}
-
-			pattern = Pattern.compile(searchText, Pattern.CASE_INSENSITIVE);
-			found = pattern.matcher(text).find();
-			return found;
+			return Pattern.compile(searchText, Pattern.CASE_INSENSITIVE);
 		} catch (final PatternSyntaxException ignore) {
-			return false;
+			return null;
 		}
 	}
 
 
+	private static boolean matches(@Nullable final Pattern pattern, @Nullable final String text) {
+		return pattern != null && text != null && pattern.matcher(text).find();
+	}
+
+
 	private class SearchField extends JTextField {
 
 		SearchField() {
@@ -624,21 +645,22 @@ abstract class QuickSearch<E> {
 				void doFind() {
 					final String text = _searchField.getText().trim();
 					if (!text.isEmpty()) {
-						final int found = find(text);
-						if (found == -1) {
-							_noMatchForeground = getNoMatchForeground();
-							_searchField.setForeground(_noMatchForeground);
-							_toolBar.setVisible(false);
-							remove(_toolBar);
-							updatePopupBounds();
-						} else {
-							_searchField.setForeground(_foregroundColor);
-							_toolBar.setVisible(true);
-							add(_toolBar, BorderLayout.LINE_END);
-							QuickSearch.this.setCursor(found);
-							setSelectedElement(found);
-							updatePopupBounds();
-						}
+						findInBackground(text, found -> {
+							if (found == -1) {
+								_noMatchForeground = getNoMatchForeground();
+								_searchField.setForeground(_noMatchForeground);
+								_toolBar.setVisible(false);
+								remove(_toolBar);
+								updatePopupBounds();
+							} else {
+								_searchField.setForeground(_foregroundColor);
+								_toolBar.setVisible(true);
+								add(_toolBar, BorderLayout.LINE_END);
+								QuickSearch.this.setCursor(found);
+								setSelectedElement(found);
+								updatePopupBounds();
+							}
+						});
 					} else {
 						hidePopup();
 					}
@@ -20,8 +20,12 @@
 package org.jetbrains.plugins.spotbugs.gui.tree.view;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.spotbugs.common.EventDispatchThreadHelper;
+import org.jetbrains.plugins.spotbugs.core.Bug;
 import org.jetbrains.plugins.spotbugs.gui.tree.model.AbstractTreeNode;
+import org.jetbrains.plugins.spotbugs.gui.tree.model.BugInstanceGroupNode;
+import org.jetbrains.plugins.spotbugs.gui.tree.model.BugInstanceNode;
 import org.jetbrains.plugins.spotbugs.gui.tree.model.VisitableTreeNode;
 
 import javax.swing.JTree;
@@ -44,7 +48,18 @@ import java.util.List;
 final class TreeQuickSearch extends QuickSearch<AbstractTreeNode<VisitableTreeNode>> implements TreeModelListener {
 
 	private JTree _tree;
-	private List<TreePath> _elementsCache;
+
+	/**
+	 * Search index: the paths in preorder and the text of their last component at the same index.
+	 * The path of a bug ends with the {@link Bug} instead of its tree node, which is created only when the bug is
+	 * found, see {@link #getTreePath(int)}.
+	 * Created on first search, then updated from the model events, see {@link #updateSubtree(TreePath)}.
+	 */
+	@Nullable
+	private List<TreePath> _paths;
+
+	@Nullable
+	private List<String> _texts;
 
 
 	private TreeQuickSearch() {
@@ -88,10 +103,16 @@ final class TreeQuickSearch extends QuickSearch<AbstractTreeNode<VisitableTreeNo
 
 	@Override
 	protected List<TreePath> getElementsCache() {
-		if (_elementsCache == null) {
-			buildElementsCache();
-		}
-		return Collections.unmodifiableList(_elementsCache);
+		buildIndex();
+		return Collections.unmodifiableList(_paths);
+	}
+
+
+	@NotNull
+	@Override
+	protected List<String> getElementTexts() {
+		buildIndex();
+		return Collections.unmodifiableList(new ArrayList<>(_texts));
 	}
 
 
@@ -102,31 +123,118 @@ final class TreeQuickSearch extends QuickSearch<AbstractTreeNode<VisitableTreeNo
 		}
 
 		//noinspection unchecked
-		return (AbstractTreeNode<VisitableTreeNode>) getElementsCache().get(index).getLastPathComponent();
+		return (AbstractTreeNode<VisitableTreeNode>) getTreePath(index).getLastPathComponent();
 	}
 
 
-	void buildElementsCache() {
-		_elementsCache = new ArrayList<TreePath>();
-		final Object root = _tree.getModel().getRoot();
-		_buildElementsCache(root, new TreePath(root), _tree.getModel());
+	/**
+	 * @return the path of the index entry, with the tree node of a bug created on demand
+	 */
+	@NotNull
+	private TreePath getTreePath(final int index) {
+		final TreePath ret = getElementsCache().get(index);
+		if (ret.getLastPathComponent() instanceof Bug) {
+			final BugInstanceGroupNode group = (BugInstanceGroupNode) ret.getParentPath().getLastPathComponent();
+			final BugInstanceNode node = group.findBugNode((Bug) ret.getLastPathComponent());
+			if (node != null) {
+				return ret.getParentPath().pathByAddingChild(node);
+			}
+		}
+		return ret;
+	}
+
+
+	private void buildIndex() {
+		if (_paths == null) {
+			_paths = new ArrayList<>();
+			_texts = new ArrayList<>();
+			final Object root = _tree.getModel().getRoot();
+			addSubtree(new TreePath(root), _paths, _texts);
+		}
 	}
 
 
-	private void _buildElementsCache(final Object node, final TreePath path, final TreeModel model) {
-		if (_tree.isRootVisible() || path.getLastPathComponent() != _tree.getModel().getRoot()) {
-			_elementsCache.add(path);
+	private void addSubtree(final TreePath path, final List<TreePath> paths, final List<String> texts) {
+		final Object node = path.getLastPathComponent();
+		if (_tree.isRootVisible() || node != _tree.getModel().getRoot()) {
+			paths.add(path);
+			texts.add(getText(node));
+		}
+		final TreeModel model = _tree.getModel();
+		if (node instanceof BugInstanceGroupNode) {
+			// the bugs come after the child groups, their tree nodes are not created
+			final BugInstanceGroupNode group = (BugInstanceGroupNode) node;
+			for (int i = 0; i < group.getGroupCount(); i++) {
+				addSubtree(path.pathByAddingChild(model.getChild(node, i)), paths, texts);
+			}
+			for (final Bug bug : group.getBugs()) {
+				paths.add(path.pathByAddingChild(bug));
+				texts.add(BugInstanceNode.getSimpleName(bug));
+			}
+			return;
 		}
 		for (int i = 0; i < model.getChildCount(node); i++) {
 			final Object childNode = model.getChild(node, i);
-			_buildElementsCache(childNode, path.pathByAddingChild(childNode), model);
+			addSubtree(path.pathByAddingChild(childNode), paths, texts);
 		}
 	}
 
 
+	@SuppressWarnings("unchecked")
+	private String getText(final Object node) {
+		if (node instanceof Bug) {
+			return BugInstanceNode.getSimpleName((Bug) node);
+		}
+		return node instanceof AbstractTreeNode ? convertElementToString((AbstractTreeNode<VisitableTreeNode>) node) : String.valueOf(node);
+	}
+
+
+	/**
+	 * Replaces the index entries of the subtree below {@code path} (preorder, so they are contiguous)
+	 * by walking the subtree again; the rest of the index is kept.
+	 */
+	private void updateSubtree(@Nullable final TreePath path) {
+		if (_paths == null) {
+			return;
+		}
+		final Object root = _tree.getModel().getRoot();
+		if (path == null || path.getPathCount() == 1 || path.getLastPathComponent() == root) {
+			clearIndex();
+			return;
+		}
+		final int start = indexOf(path.getLastPathComponent());
+		if (start == -1) {
+			clearIndex();
+			return;
+		}
+		int end = start + 1;
+		while (end < _paths.size() && _paths.get(end).getPathCount() > path.getPathCount()) {
+			end++;
+		}
+		final List<TreePath> paths = new ArrayList<>();
+		final List<String> texts = new ArrayList<>();
+		addSubtree(path, paths, texts);
+		_paths.subList(start, end).clear();
+		_paths.addAll(start, paths);
+		_texts.subList(start, end).clear();
+		_texts.addAll(start, texts);
+	}
+
+
+	private int indexOf(final Object node) {
+		final Object component = node instanceof BugInstanceNode ? ((BugInstanceNode) node).getBug() : node;
+		for (int i = 0; i < _paths.size(); i++) {
+			if (_paths.get(i).getLastPathComponent() == component) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
 	@Override
 	protected void setSelectedElement(final int index) {
-		final TreePath path = getElementsCache().get(index);
+		final TreePath path = getTreePath(index);
 		_tree.setExpandsSelectedPaths(true);
 		//_tree.addSelectionPath(path);
 		_tree.setSelectionPath(path);
@@ -143,39 +251,45 @@ final class TreeQuickSearch extends QuickSearch<AbstractTreeNode<VisitableTreeNo
 	}
 
 
-	private void clearElementsCache() {
-		if (_elementsCache != null) {
-			_elementsCache.clear();
-			//noinspection AssignmentToNull
-			_elementsCache = null;
-		}
+	private void clearIndex() {
+		//noinspection AssignmentToNull
+		_paths = null;
+		//noinspection AssignmentToNull
+		_texts = null;
 	}
 
 
 	@Override
 	public void treeNodesChanged(final TreeModelEvent e) {
 		hidePopup();
-		clearElementsCache();
+		if (_paths != null && e.getChildren() != null) {
+			for (final Object child : e.getChildren()) {
+				final int index = indexOf(child);
+				if (index != -1) {
+					_texts.set(index, getText(child));
+				}
+			}
+		}
 	}
 
 
 	@Override
 	public void treeNodesInserted(final TreeModelEvent e) {
 		hidePopup();
-		clearElementsCache();
+		updateSubtree(e.getTreePath());
 	}
 
 
 	@Override
 	public void treeNodesRemoved(final TreeModelEvent e) {
 		hidePopup();
-		clearElementsCache();
+		updateSubtree(e.getTreePath());
 	}
 
 
 	@Override
 	public void treeStructureChanged(final TreeModelEvent e) {
 		hidePopup();
-		clearElementsCache();
+		updateSubtree(e.getTreePath());
 	}
-}
\ No newline at end of file
+}
@@ -19,12 +19,11 @@
  */
 package org.jetbrains.plugins.spotbugs.intentions;
 
-import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiFile;
 import com.intellij.ui.RowIcon;
 import com.intellij.util.IconUtil;
 import com.intellij.util.IncorrectOperationException;
@@ -46,10 +45,9 @@ public class ClearAndSuppressBugIntentionAction extends SuppressReportBugIntenti
 	@Override
 	public void invoke(@NotNull final Project project, final Editor editor, @NotNull final PsiElement element) throws IncorrectOperationException {
 		final ToolWindowPanel toolWindow = ToolWindowPanel.getInstance(project);
-		final Map<PsiFile, List<ExtendedProblemDescriptor>> problems = toolWindow.getProblems();
-		problems.get(element.getContainingFile()).remove(getProblemDescriptor());
-		super.invoke(project, editor, element);
-		DaemonCodeAnalyzer.getInstance(project).restart();
+		final Map<VirtualFile, List<ExtendedProblemDescriptor>> problems = toolWindow.getProblems();
+		problems.get(getProblemDescriptor().getVirtualFile()).remove(getProblemDescriptor());
+		super.invoke(project, editor, element); // restarts the highlighting
 	}
 
 	@Override
@@ -19,20 +19,20 @@
  */
 package org.jetbrains.plugins.spotbugs.intentions;
 
-import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiDeclarationStatement;
 import com.intellij.psi.PsiDocCommentOwner;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.IncorrectOperationException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.spotbugs.common.ExtendedProblemDescriptor;
+import org.jetbrains.plugins.spotbugs.core.ProblemCacheService;
 import org.jetbrains.plugins.spotbugs.gui.toolwindow.view.ToolWindowPanel;
 import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
 
@@ -49,9 +49,9 @@ public class ClearBugIntentionAction extends SuppressReportBugIntentionAction {
 	@Override
 	public void invoke(@NotNull final Project project, final Editor editor, @NotNull final PsiElement element) throws IncorrectOperationException {
 		final ToolWindowPanel toolWindow = ToolWindowPanel.getInstance(project);
-		final Map<PsiFile, List<ExtendedProblemDescriptor>> problems = toolWindow.getProblems();
-		problems.get(element.getContainingFile()).remove(getProblemDescriptor());
-		DaemonCodeAnalyzer.getInstance(project).restart();
+		final Map<VirtualFile, List<ExtendedProblemDescriptor>> problems = toolWindow.getProblems();
+		problems.get(getProblemDescriptor().getVirtualFile()).remove(getProblemDescriptor());
+		project.getService(ProblemCacheService.class).restartHighlighting();
 	}
 
 	@Override
@@ -19,7 +19,6 @@
  */
 package org.jetbrains.plugins.spotbugs.intentions;
 
-import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.codeInspection.InspectionsBundle;
 import com.intellij.codeInspection.SuppressIntentionAction;
 import com.intellij.codeInspection.SuppressManager;
@@ -64,6 +63,7 @@ import org.jetbrains.plugins.spotbugs.common.FindBugsPluginConstants;
 import org.jetbrains.plugins.spotbugs.common.util.FileModificationServiceUtil;
 import org.jetbrains.plugins.spotbugs.common.util.IdeaUtilImpl;
 import org.jetbrains.plugins.spotbugs.core.ModuleSettings;
+import org.jetbrains.plugins.spotbugs.core.ProblemCacheService;
 import org.jetbrains.plugins.spotbugs.core.ProjectSettings;
 import org.jetbrains.plugins.spotbugs.gui.toolwindow.view.ToolWindowPanel;
 import org.jetbrains.plugins.spotbugs.resources.ResourcesLoader;
@@ -183,9 +183,9 @@ public class SuppressReportBugIntentionAction extends SuppressIntentionAction im
 			Messages.showErrorDialog(editor.getComponent(), "Add suppress annotation is not supported for Java 1.3 and older", "Unsupported");
 		}
 		final ToolWindowPanel toolWindow = ToolWindowPanel.getInstance(project);
-		final Map<PsiFile, List<ExtendedProblemDescriptor>> problems = toolWindow.getProblems();
-		problems.get(element.getContainingFile()).remove(getProblemDescriptor());
-		DaemonCodeAnalyzer.getInstance(project).restart();
+		final Map<VirtualFile, List<ExtendedProblemDescriptor>> problems = toolWindow.getProblems();
+		problems.get(getProblemDescriptor().getVirtualFile()).remove(getProblemDescriptor());
+		project.getService(ProblemCacheService.class).restartHighlighting();
 	}
 
 	private void addImport(final Project project, final PsiElement element) {
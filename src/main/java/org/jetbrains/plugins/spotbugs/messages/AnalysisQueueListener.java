@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.messages;
+
+import com.intellij.util.messages.Topic;
+
+public interface AnalysisQueueListener {
+	Topic<AnalysisQueueListener> TOPIC = Topic.create("SpotBugs Analysis Queue", AnalysisQueueListener.class);
+
+	/**
+	 * Invoked by EDT.
+	 *
+	 * @param pendingRequests number of analysis requests waiting for the running one
+	 * @param running         {@code true} if an analysis is running
+	 */
+	void queueChanged(int pendingRequests, boolean running);
+}
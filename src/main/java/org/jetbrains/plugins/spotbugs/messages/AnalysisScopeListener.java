@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.messages;
+
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+public interface AnalysisScopeListener {
+	Topic<AnalysisScopeListener> TOPIC = Topic.create("SpotBugs Analysis Scope", AnalysisScopeListener.class);
+
+	/**
+	 * Invoked by EDT after {@link AnalysisStartedListener#analysisStarted()} and before the first new bug.
+	 *
+	 * @param classNames top level class names of the analyzed classes,
+	 *                   {@code null} if the analysis replaces the whole result (f. e. an import)
+	 */
+	void analysisScope(@Nullable Set<String> classNames);
+}
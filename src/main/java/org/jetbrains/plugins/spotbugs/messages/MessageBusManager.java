@@ -29,7 +29,9 @@ import org.jetbrains.plugins.spotbugs.core.FindBugsResult;
 import org.jetbrains.plugins.spotbugs.core.FindBugsState;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 public final class MessageBusManager {
@@ -77,9 +79,9 @@ public final class MessageBusManager {
 		publish(project, ClearListener.TOPIC).clear();
 	}
 
-	public static void publishNewBug(@NotNull final Project project, @NotNull final Bug bug, final int analyzedClassCount) {
+	public static void publishNewBugs(@NotNull final Project project, @NotNull final List<Bug> bugs, final int analyzedClassCount) {
 		EventDispatchThreadHelper.checkEDT();
-		publish(project, NewBugListener.TOPIC).newBug(bug, analyzedClassCount);
+		publish(project, NewBugListener.TOPIC).newBugs(bugs, analyzedClassCount);
 	}
 
 	public static void publishAnalysisStarted(@NotNull final Project project) {
@@ -96,6 +98,11 @@ public final class MessageBusManager {
 		});
 	}
 
+	public static void publishAnalysisScopeToEDT(@NotNull final Project project, @Nullable final Set<String> classNames) {
+		EventDispatchThreadHelper.checkNotEDT();
+		EventDispatchThreadHelper.invokeLater(() -> publish(project, AnalysisScopeListener.TOPIC).analysisScope(classNames));
+	}
+
 	public static void publishAnalysisAborting(@NotNull final Project project) {
 		EventDispatchThreadHelper.checkEDT();
 		FindBugsState.set(project, FindBugsState.Aborting);
@@ -123,6 +130,11 @@ public final class MessageBusManager {
 		});
 	}
 
+	public static void publishAnalysisQueueChanged(@NotNull final Project project, final int pendingRequests, final boolean running) {
+		EventDispatchThreadHelper.checkEDT();
+		publish(project, AnalysisQueueListener.TOPIC).queueChanged(pendingRequests, running);
+	}
+
 	@NotNull
 	private static <L> L publish(@NotNull final Project project, @NotNull final Topic<L> topic) {
 		EventDispatchThreadHelper.checkEDT();
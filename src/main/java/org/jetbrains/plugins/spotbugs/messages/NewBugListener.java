@@ -23,11 +23,16 @@ import com.intellij.util.messages.Topic;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.spotbugs.core.Bug;
 
+import java.util.List;
+
 public interface NewBugListener {
 	Topic<NewBugListener> TOPIC = Topic.create("SpotBugs New Bug", NewBugListener.class);
 
 	/**
 	 * Invoked by EDT.
+	 *
+	 * @param bugs               new bugs in report order, see {@link org.jetbrains.plugins.spotbugs.core.NewBugQueue}
+	 * @param analyzedClassCount analyzed classes so far
 	 */
-	void newBug(@NotNull Bug bug, int analyzedClassCount);
+	void newBugs(@NotNull List<Bug> bugs, int analyzedClassCount);
 }
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.worker;
+
+import edu.umd.cs.findbugs.AbstractBugReporter;
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.FindBugsProgress;
+import edu.umd.cs.findbugs.PackageStats;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.ProjectStats;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.config.UserPreferences;
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Main class of the out-of-process analysis worker, see {@code org.jetbrains.plugins.spotbugs.core.AnalysisWorkers}.
+ * <p>
+ * Runs in its own JVM with only SpotBugs on the classpath, so it must not use any IntelliJ class.
+ * It reads {@link WorkerProtocol#ANALYZE} requests from stdin, analyzes one request at a time and streams
+ * the results to stdout. The worker exits when stdin is closed.
+ */
+public final class AnalysisWorker {
+
+	private static final long FLUSH_INTERVAL_MS = 100;
+
+	@NotNull
+	private final DataInputStream in;
+
+	@NotNull
+	private final DataOutputStream out;
+
+	@NotNull
+	private final Set<String> loadedPluginUrls;
+
+	private volatile Thread analysisThread;
+
+	private volatile boolean canceled;
+
+	private long lastFlush;
+
+	private AnalysisWorker(@NotNull final DataInputStream in, @NotNull final DataOutputStream out) {
+		this.in = in;
+		this.out = out;
+		loadedPluginUrls = new HashSet<>();
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final PrintStream protocolOut = System.out;
+		System.setOut(System.err); // detectors can print to System.out which would corrupt the protocol
+		new AnalysisWorker(
+				new DataInputStream(new BufferedInputStream(System.in)),
+				new DataOutputStream(new BufferedOutputStream(protocolOut))
+		).run();
+	}
+
+	private void run() throws IOException {
+		while (true) {
+			final int type;
+			try {
+				type = in.readByte();
+			} catch (final EOFException e) {
+				return; // IDE closed the pipe
+			}
+			switch (type) {
+				case WorkerProtocol.ANALYZE:
+					final Request request = Request.read(in);
+					canceled = false;
+					final Thread thread = new Thread(() -> analyze(request), "SpotBugs Analysis");
+					analysisThread = thread;
+					thread.start();
+					break;
+				case WorkerProtocol.CANCEL:
+					final Thread running = analysisThread;
+					canceled = true;
+					if (running != null) {
+						running.interrupt(); // causes break in FindBugs main loop
+					}
+					break;
+				default:
+					throw new IOException("Unknown frame type " + type);
+			}
+		}
+	}
+
+	private void analyze(@NotNull final Request request) {
+		final WorkerReporter reporter = new WorkerReporter();
+		try {
+			loadPlugins(request.pluginUrls);
+			final UserPreferences userPrefs = UserPreferences.createDefaultUserPreferences();
+			userPrefs.read(new ByteArrayInputStream(request.userPreferences));
+			reporter.setPriorityThreshold(userPrefs.getUserDetectorThreshold());
+			reporter.setRankThreshold(userPrefs.getFilterSettings().getMinRank());
+
+			final FindBugs2 engine = new FindBugs2();
+			try {
+				engine.setNoClassOk(true);
+				engine.setMergeSimilarWarnings(false);
+				engine.setBugReporter(reporter);
+				engine.setProject(request.createProject());
+				engine.setProgressCallback(reporter);
+				configureFilter(engine, userPrefs);
+				engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+				engine.setUserPreferences(userPrefs);
+				engine.execute();
+			} finally {
+				engine.dispose();
+			}
+			reporter.writeBugs();
+			writeDone(Thread.interrupted(), reporter.getProjectStats());
+		} catch (final InterruptedException | ScanCanceledException e) {
+			Thread.interrupted();
+			reporter.writeBugs();
+			writeDone(true, reporter.getProjectStats());
+		} catch (final Throwable e) {
+			final StringWriter stackTrace = new StringWriter();
+			e.printStackTrace(new PrintWriter(stackTrace));
+			write(WorkerProtocol.ERROR, o -> WorkerProtocol.writeString(o, stackTrace.toString()), true);
+		} finally {
+			analysisThread = null;
+		}
+	}
+
+	private void loadPlugins(@NotNull final List<String> pluginUrls) throws Exception {
+		if (loadedPluginUrls.equals(new HashSet<>(pluginUrls))) {
+			return;
+		}
+		for (final Plugin plugin : new ArrayList<>(Plugin.getAllPlugins())) {
+			if (!plugin.isCorePlugin()) {
+				Plugin.removeCustomPlugin(plugin);
+			}
+		}
+		loadedPluginUrls.clear();
+		for (final String pluginUrl : pluginUrls) {
+			final Plugin plugin = Plugin.loadCustomPlugin(new URL(pluginUrl), null);
+			if (plugin != null) {
+				plugin.setGloballyEnabled(true);
+			}
+			loadedPluginUrls.add(pluginUrl);
+		}
+	}
+
+	private static void configureFilter(@NotNull final FindBugs2 engine, @NotNull final UserPreferences userPrefs) throws Exception {
+		for (final Map.Entry<String, Boolean> excludeFilterFile : userPrefs.getExcludeFilterFiles().entrySet()) {
+			if (excludeFilterFile.getValue()) {
+				engine.addFilter(excludeFilterFile.getKey(), false);
+			}
+		}
+		for (final Map.Entry<String, Boolean> includeFilterFile : userPrefs.getIncludeFilterFiles().entrySet()) {
+			if (includeFilterFile.getValue()) {
+				engine.addFilter(includeFilterFile.getKey(), true);
+			}
+		}
+		for (final Map.Entry<String, Boolean> excludeBugsFile : userPrefs.getExcludeBugsFiles().entrySet()) {
+			if (excludeBugsFile.getValue()) {
+				engine.excludeBaselineBugs(excludeBugsFile.getKey());
+			}
+		}
+	}
+
+	private void writeDone(final boolean canceled, @NotNull final ProjectStats projectStats) {
+		write(WorkerProtocol.DONE, o -> {
+			o.writeBoolean(canceled);
+			final List<PackageStats.ClassStats> classStats = new ArrayList<>();
+			for (final PackageStats packageStats : projectStats.getPackageStats()) {
+				classStats.addAll(packageStats.getClassStats());
+			}
+			o.writeInt(classStats.size());
+			for (final PackageStats.ClassStats stats : classStats) {
+				WorkerProtocol.writeString(o, stats.getName());
+				WorkerProtocol.writeString(o, stats.getSourceFile() != null ? stats.getSourceFile() : "");
+				o.writeInt(stats.size());
+			}
+		}, true);
+	}
+
+	private void write(final byte type, @NotNull final Payload payload, final boolean flush) {
+		synchronized (out) {
+			try {
+				out.writeByte(type);
+				payload.write(out);
+				final long now = System.currentTimeMillis();
+				if (flush || now - lastFlush > FLUSH_INTERVAL_MS) {
+					out.flush();
+					lastFlush = now;
+				}
+			} catch (final IOException e) {
+				// IDE is gone
+				System.exit(1);
+			}
+		}
+	}
+
+	private interface Payload {
+		void write(@NotNull DataOutputStream out) throws IOException;
+	}
+
+	private static final class Request {
+
+		@NotNull
+		private final List<String> pluginUrls;
+
+		@NotNull
+		private final String projectName;
+
+		@NotNull
+		private final List<String> files;
+
+		@NotNull
+		private final List<String> auxClasspathEntries;
+
+		@NotNull
+		private final List<String> sourceDirs;
+
+		@NotNull
+		private final List<String> enabledPluginIds;
+
+		@NotNull
+		private final List<String> disabledPluginIds;
+
+		@NotNull
+		private final byte[] userPreferences;
+
+		private Request(@NotNull final DataInputStream in) throws IOException {
+			pluginUrls = WorkerProtocol.readStrings(in);
+			projectName = WorkerProtocol.readString(in);
+			files = WorkerProtocol.readStrings(in);
+			auxClasspathEntries = WorkerProtocol.readStrings(in);
+			sourceDirs = WorkerProtocol.readStrings(in);
+			enabledPluginIds = WorkerProtocol.readStrings(in);
+			disabledPluginIds = WorkerProtocol.readStrings(in);
+			userPreferences = WorkerProtocol.readBytes(in);
+		}
+
+		@NotNull
+		static Request read(@NotNull final DataInputStream in) throws IOException {
+			return new Request(in);
+		}
+
+		@NotNull
+		Project createProject() {
+			final Project ret = new Project();
+			ret.setProjectName(projectName);
+			for (final String file : files) {
+				ret.addFile(file);
+			}
+			for (final String auxClasspathEntry : auxClasspathEntries) {
+				ret.addAuxClasspathEntry(auxClasspathEntry);
+			}
+			ret.addSourceDirs(sourceDirs);
+			for (final String pluginId : enabledPluginIds) {
+				ret.setPluginStatusTrinary(pluginId, true);
+			}
+			for (final String pluginId : disabledPluginIds) {
+				ret.setPluginStatusTrinary(pluginId, false);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Streams bugs and progress to the IDE. The bugs are not collected in the worker, they are sent in batches,
+	 * see {@link #writeBugs()}.
+	 */
+	private final class WorkerReporter extends AbstractBugReporter implements FindBugsProgress {
+
+		@NotNull
+		private final SortedBugCollection bugCollection = new SortedBugCollection();
+
+		/**
+		 * Bugs not sent yet, only accessed by the analysis thread.
+		 */
+		@NotNull
+		private final List<BugInstance> pendingBugs = new ArrayList<>();
+
+		private long lastBugsWritten;
+
+		@Override
+		protected void doReportBug(@NotNull final BugInstance bug) {
+			pendingBugs.add(bug);
+			if (System.currentTimeMillis() - lastBugsWritten > FLUSH_INTERVAL_MS) {
+				writeBugs();
+			}
+		}
+
+		/**
+		 * Writes the pending bugs as one {@link WorkerProtocol#BUG} frame: only their {@code BugInstance} elements
+		 * in a {@code BugCollection} element, without the project, summary and statistics of a bug collection file.
+		 */
+		void writeBugs() {
+			lastBugsWritten = System.currentTimeMillis();
+			if (pendingBugs.isEmpty()) {
+				return;
+			}
+			final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+			try {
+				final XMLOutput xmlOutput = new OutputStreamXMLOutput(xml);
+				xmlOutput.beginDocument();
+				xmlOutput.openTag("BugCollection");
+				for (final BugInstance bug : pendingBugs) {
+					bug.writeXML(xmlOutput, bugCollection, false);
+				}
+				xmlOutput.closeTag("BugCollection");
+				xmlOutput.finish();
+			} catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+			pendingBugs.clear();
+			write(WorkerProtocol.BUG, o -> WorkerProtocol.writeBytes(o, xml.toByteArray()), false);
+		}
+
+		@Override
+		public ProjectStats getProjectStats() {
+			return bugCollection.getProjectStats();
+		}
+
+		@Override
+		public SortedBugCollection getBugCollection() {
+			return bugCollection;
+		}
+
+		@Override
+		public void observeClass(@NotNull final ClassDescriptor classDescriptor) {
+		}
+
+		@Override
+		public void reportAnalysisError(final AnalysisError error) {
+		}
+
+		@Override
+		public void reportMissingClass(final String missingClass) {
+		}
+
+		@Override
+		public void finish() {
+		}
+
+		@Override
+		public void reportNumberOfArchives(final int numArchives) {
+			abortIfCanceled();
+			write(WorkerProtocol.NUMBER_OF_ARCHIVES, o -> o.writeInt(numArchives), false);
+		}
+
+		@Override
+		public void startArchive(final String name) {
+			abortIfCanceled();
+		}
+
+		@Override
+		public void finishArchive() {
+			write(WorkerProtocol.FINISH_ARCHIVE, o -> {
+			}, false);
+			abortIfCanceled();
+		}
+
+		/**
+		 * FindBugs ignores the interrupt while it scans the codebases.
+		 */
+		private void abortIfCanceled() {
+			if (canceled) {
+				throw new ScanCanceledException();
+			}
+		}
+
+		@Override
+		public void predictPassCount(final int[] classesPerPass) {
+			write(WorkerProtocol.PREDICT_PASS_COUNT, o -> {
+				o.writeInt(classesPerPass.length);
+				for (final int count : classesPerPass) {
+					o.writeInt(count);
+				}
+			}, false);
+		}
+
+		@Override
+		public void startAnalysis(final int numClasses) {
+			write(WorkerProtocol.START_ANALYSIS, o -> o.writeInt(numClasses), false);
+		}
+
+		@Override
+		public void finishClass() {
+			write(WorkerProtocol.FINISH_CLASS, o -> {
+			}, false);
+		}
+
+		@Override
+		public void finishPerClassAnalysis() {
+			write(WorkerProtocol.FINISH_PER_CLASS_ANALYSIS, o -> {
+			}, false);
+		}
+	}
+
+	private static final class ScanCanceledException extends RuntimeException {
+		ScanCanceledException() {
+			super("SpotBugs analysis canceled", null, false, false);
+		}
+	}
+}
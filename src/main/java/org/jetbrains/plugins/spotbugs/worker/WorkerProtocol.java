@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.worker;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frames exchanged between the IDE and the {@link AnalysisWorker} process over the stdin/stdout pipes of the worker.
+ * Each frame starts with one of the type bytes below, followed by its payload.
+ * <p>
+ * This class is also loaded by the worker, so it must only depend on the JDK.
+ */
+public final class WorkerProtocol {
+
+	/**
+	 * IDE to worker: custom plugin URLs, project (name, files, aux classpath entries, source dirs, plugin status) and user preferences.
+	 */
+	public static final byte ANALYZE = 1;
+
+	/**
+	 * IDE to worker: cancel the running analysis. The worker answers with {@link #DONE},
+	 * if it does not answer within a few seconds the IDE destroys the worker.
+	 */
+	public static final byte CANCEL = 2;
+
+	/**
+	 * Worker to IDE: a batch of bugs, written as {@code BugInstance} elements of a bug collection XML document.
+	 */
+	public static final byte BUG = 10;
+
+	public static final byte NUMBER_OF_ARCHIVES = 11;
+	public static final byte FINISH_ARCHIVE = 12;
+	public static final byte START_ANALYSIS = 13;
+	public static final byte FINISH_CLASS = 14;
+	public static final byte FINISH_PER_CLASS_ANALYSIS = 15;
+	public static final byte PREDICT_PASS_COUNT = 16;
+
+	/**
+	 * Worker to IDE: analysis finished (canceled flag and the analyzed classes). The worker can be reused.
+	 */
+	public static final byte DONE = 20;
+
+	/**
+	 * Worker to IDE: analysis failed with the given stack trace. The worker can be reused.
+	 */
+	public static final byte ERROR = 21;
+
+	private WorkerProtocol() {
+	}
+
+	public static void writeBytes(@NotNull final DataOutputStream out, @NotNull final byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	@NotNull
+	public static byte[] readBytes(@NotNull final DataInputStream in) throws IOException {
+		final byte[] ret = new byte[in.readInt()];
+		in.readFully(ret);
+		return ret;
+	}
+
+	/**
+	 * Unlike {@link DataOutputStream#writeUTF(String)}, this is not limited to 64k.
+	 */
+	public static void writeString(@NotNull final DataOutputStream out, @NotNull final String value) throws IOException {
+		writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@NotNull
+	public static String readString(@NotNull final DataInputStream in) throws IOException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	public static void writeStrings(@NotNull final DataOutputStream out, @NotNull final List<String> values) throws IOException {
+		out.writeInt(values.size());
+		for (final String value : values) {
+			writeString(out, value);
+		}
+	}
+
+	@NotNull
+	public static List<String> readStrings(@NotNull final DataInputStream in) throws IOException {
+		final int size = in.readInt();
+		final List<String> ret = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			ret.add(readString(in));
+		}
+		return ret;
+	}
+}
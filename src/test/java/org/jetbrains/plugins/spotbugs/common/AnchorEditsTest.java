@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it 
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of 
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied 
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AnchorEditsTest {
+
+    private static final String METHOD = "public void methodStartsWithAccessModifier() {\n    int a = 1;\n}";
+
+    @Test
+    public void testWordHashesIgnoreWhitespaceAndOrder() {
+        assertArrayEquals(AnchorEdits.getWordHashes("int a = 1;"), AnchorEdits.getWordHashes("\t1;  =\na int "));
+        assertEquals(4, AnchorEdits.getWordHashes("int a = 1;").length);
+        assertEquals(0, AnchorEdits.getWordHashes(" \n ").length);
+    }
+
+    @Test
+    public void testLengthMostlyEdited() {
+        assertFalse(AnchorEdits.isLengthMostlyEdited(10, 10));
+        assertFalse(AnchorEdits.isLengthMostlyEdited(10, 15));
+        assertFalse(AnchorEdits.isLengthMostlyEdited(10, 5));
+        assertTrue(AnchorEdits.isLengthMostlyEdited(10, 16));
+        assertTrue(AnchorEdits.isLengthMostlyEdited(10, 4));
+    }
+
+    @Test
+    public void testUnchangedAndReformattedTextIsNotEdited() {
+        final int[] words = AnchorEdits.getWordHashes(METHOD);
+        assertFalse(AnchorEdits.isMostlyEdited(words, METHOD));
+        assertFalse(AnchorEdits.isMostlyEdited(words, "public  void methodStartsWithAccessModifier()\n{\n\tint a = 1;\n}"));
+    }
+
+    @Test
+    public void testFewWordsEditedIsNotEdited() {
+        final int[] words = AnchorEdits.getWordHashes(METHOD);
+        assertFalse(AnchorEdits.isMostlyEdited(words, "public void methodStartsWithAccessModifier() {\n    int b = 2;\n}"));
+    }
+
+    @Test
+    public void testSameLengthRewriteIsEdited() {
+        final String anchor = "methodStartsWithAccessModifier";
+        final String renamed = "renamedMethodWithSameLength123";
+        assertEquals(anchor.length(), renamed.length());
+        assertFalse(AnchorEdits.isLengthMostlyEdited(anchor.length(), renamed.length()));
+        assertTrue(AnchorEdits.isMostlyEdited(AnchorEdits.getWordHashes(anchor), renamed));
+    }
+
+    @Test
+    public void testMostWordsReplacedIsEdited() {
+        final int[] words = AnchorEdits.getWordHashes(METHOD);
+        assertTrue(AnchorEdits.isMostlyEdited(words, "private int other(final String s) {\n    return s.length();\n}"));
+    }
+
+    @Test
+    public void testAnchorWithoutWordsIsNeverEdited() {
+        assertFalse(AnchorEdits.isMostlyEdited(AnchorEdits.getWordHashes(""), "anything"));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.compiler.CompileScope;
+import com.intellij.openapi.compiler.CompilerManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.spotbugs.messages.MessageBusManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The test starters never leave the compile step, so an analysis is running until {@link TestStarter#finish()}.
+ */
+public class AnalysisSchedulerTest extends JavaCodeInsightFixtureTestCase {
+
+    private final List<String> started = new ArrayList<>();
+
+    public void testQueueWhileRunning() {
+        final TestStarter first = new TestStarter("first", ProgressStartType.RunInBackground, false);
+        final TestStarter second = new TestStarter("second", ProgressStartType.RunInBackground, false);
+        first.start();
+        second.start();
+        assertEquals(Collections.singletonList("first"), started);
+
+        first.finish();
+        assertEquals(Arrays.asList("first", "second"), started);
+        second.finish();
+    }
+
+    public void testInteractiveSupersedesBackground() {
+        final TestStarter background = new TestStarter("background", ProgressStartType.RunInBackground, true);
+        final TestStarter interactive = new TestStarter("interactive", ProgressStartType.RunInBackground, false);
+        background.start();
+        interactive.start();
+        assertTrue(background.isSuperseded());
+        assertEquals(Collections.singletonList("background"), started);
+
+        background.finish();
+        assertEquals(Arrays.asList("background", "interactive"), started);
+        interactive.finish();
+    }
+
+    public void testInteractiveDoesNotSupersedeInteractive() {
+        final TestStarter first = new TestStarter("first", ProgressStartType.RunInBackground, false);
+        final TestStarter second = new TestStarter("second", ProgressStartType.RunInBackground, false);
+        first.start();
+        second.start();
+        assertFalse(first.isSuperseded());
+        first.finish();
+        second.finish();
+    }
+
+    public void testModalStartsImmediately() {
+        final TestStarter running = new TestStarter("running", ProgressStartType.RunInBackground, false);
+        final TestStarter modal = new TestStarter("modal", ProgressStartType.Modal, false);
+        running.start();
+        modal.start();
+        assertTrue(running.isSuperseded());
+        assertEquals(Arrays.asList("running", "modal"), started);
+
+        running.finish(); // superseded, must not release the modal analysis
+        final TestStarter next = new TestStarter("next", ProgressStartType.RunInBackground, false);
+        next.start();
+        assertEquals(Arrays.asList("running", "modal"), started);
+
+        modal.finish();
+        assertEquals(Arrays.asList("running", "modal", "next"), started);
+        next.finish();
+    }
+
+    public void testFailedStartDoesNotBlockQueue() {
+        final TestStarter failing = new TestStarter("failing", ProgressStartType.RunInBackground, false) {
+            @Override
+            protected void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer) {
+                throw new IllegalStateException("compile scope");
+            }
+        };
+        try {
+            failing.start();
+            fail();
+        } catch (final IllegalStateException expected) {
+        }
+        final TestStarter next = new TestStarter("next", ProgressStartType.RunInBackground, false);
+        next.start();
+        assertEquals(Collections.singletonList("next"), started);
+        next.finish();
+    }
+
+    public void testAbortDropsQueue() {
+        final TestStarter running = new TestStarter("running", ProgressStartType.RunInBackground, false);
+        final TestStarter queued = new TestStarter("queued", ProgressStartType.RunInBackground, false);
+        running.start();
+        queued.start();
+        MessageBusManager.publishAnalysisAborting(getProject());
+        running.finish();
+        assertEquals(Collections.singletonList("running"), started);
+    }
+
+    private class TestStarter extends FindBugsStarter {
+
+        @NotNull
+        private final String name;
+
+        private final boolean background;
+
+        private Consumer<CompileScope> compiled;
+
+        TestStarter(@NotNull final String name, @NotNull final ProgressStartType progressStartType, final boolean background) {
+            super(getProject(), name, progressStartType);
+            this.name = name;
+            this.background = background;
+        }
+
+        @Override
+        protected boolean isCompileBeforeAnalyze() {
+            return true;
+        }
+
+        @Override
+        protected void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer) {
+            started.add(name);
+            compiled = consumer;
+        }
+
+        @Override
+        protected boolean configure(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects, final boolean justCompiled) {
+            throw new AssertionError("Compile step is never finished successfully");
+        }
+
+        @Override
+        boolean isBackground() {
+            return background;
+        }
+
+        /**
+         * Ends the compile step without a scope, which ends the analysis.
+         */
+        void finish() {
+            compiled.consume(null);
+        }
+    }
+}
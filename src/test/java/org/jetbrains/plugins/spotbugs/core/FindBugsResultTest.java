@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FindBugsResultTest {
+
+    private Project project;
+    private SortedBugCollection bugCollection;
+    private FindBugsResult result;
+
+    @Before
+    public void setUp() {
+        project = new Project();
+        bugCollection = new SortedBugCollection(project);
+        bugCollection.getProjectStats().addClass("test.A", "A.java", false, 10);
+        bugCollection.getProjectStats().addClass("test.A$1", "A.java", false, 10);
+        bugCollection.getProjectStats().addClass("test.B", "B.java", false, 10);
+        bugCollection.add(createBug("NP_ALWAYS_NULL", "test.A"), false);
+        bugCollection.add(createBug("NP_ALWAYS_NULL", "test.A$1"), false);
+        bugCollection.add(createBug("NP_ALWAYS_NULL", "test.B"), false);
+        result = new FindBugsResult();
+        result.put(project, bugCollection);
+    }
+
+    @Test
+    public void testRemoveBugs() {
+        final FindBugsResult removed = result.removeBugs(Collections.singleton("test.A"));
+
+        assertEquals(1, bugCollection.getCollection().size());
+        assertEquals(1, bugCollection.getProjectStats().getTotalBugs());
+        assertEquals(3, bugCollection.getProjectStats().getNumClasses());
+        assertEquals(2, removed.getResults().get(project).getCollection().size());
+    }
+
+    @Test
+    public void testRemoveBugsOfUnknownClass() {
+        final FindBugsResult removed = result.removeBugs(Collections.singleton("test.C"));
+
+        assertEquals(3, bugCollection.getCollection().size());
+        assertNull(removed.getResults().get(project));
+    }
+
+    @Test
+    public void testMergeRemovedBugsBack() {
+        result.merge(result.removeBugs(Collections.singleton("test.A")));
+
+        assertEquals(3, bugCollection.getCollection().size());
+        assertEquals(3, bugCollection.getProjectStats().getTotalBugs());
+        assertEquals(3, bugCollection.getProjectStats().getNumClasses());
+    }
+
+    @Test
+    public void testMergePartialResult() {
+        result.removeBugs(Collections.singleton("test.B"));
+        final SortedBugCollection partialBugCollection = new SortedBugCollection(project);
+        partialBugCollection.getProjectStats().addClass("test.B", "B.java", false, 10);
+        partialBugCollection.getProjectStats().addClass("test.C", "C.java", false, 10);
+        partialBugCollection.add(createBug("NP_ALWAYS_NULL", "test.B"), false);
+        partialBugCollection.add(createBug("DLS_DEAD_LOCAL_STORE", "test.B"), false);
+        partialBugCollection.add(createBug("NP_ALWAYS_NULL", "test.C"), false);
+        final FindBugsResult partial = new FindBugsResult();
+        partial.put(project, partialBugCollection);
+
+        result.merge(partial);
+
+        assertEquals(1, result.getResults().size());
+        assertEquals(5, bugCollection.getCollection().size());
+        assertEquals(5, bugCollection.getProjectStats().getTotalBugs());
+        assertEquals(4, bugCollection.getProjectStats().getNumClasses());
+        assertEquals(Integer.valueOf(4), result.getAnalyzedClassCount());
+    }
+
+    @Test
+    public void testMergeOtherProject() {
+        final Project other = new Project();
+        final SortedBugCollection otherBugCollection = new SortedBugCollection(other);
+        otherBugCollection.add(createBug("NP_ALWAYS_NULL", "other.A"), false);
+        final FindBugsResult partial = new FindBugsResult();
+        partial.put(other, otherBugCollection);
+
+        result.merge(partial);
+
+        assertEquals(2, result.getResults().size());
+        assertEquals(3, bugCollection.getCollection().size());
+    }
+
+    @Test
+    public void testGetTopLevelClassName() {
+        assertEquals("test.A", FindBugsResult.getTopLevelClassName("test.A$1"));
+        assertEquals("test.A", FindBugsResult.getTopLevelClassName("test.A"));
+    }
+
+    @NotNull
+    private static BugInstance createBug(@NotNull final String type, @NotNull final String className) {
+        return new BugInstance(type, 1).addClass(className);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalAnalysisCacheTest {
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testGetReferencedClasses() throws IOException {
+        final Set<String> referenced;
+        try (InputStream in = IncrementalAnalysisCacheTest.class.getResourceAsStream("IncrementalAnalysisCacheTest.class")) {
+            referenced = IncrementalAnalysisCache.getReferencedClasses(new ClassReader(in));
+        }
+        assertTrue(referenced.contains("java/lang/Object"));
+        assertTrue(referenced.contains("org/jetbrains/plugins/spotbugs/core/IncrementalAnalysisCache"));
+        assertTrue(referenced.contains("org/objectweb/asm/ClassReader"));
+        assertFalse(referenced.contains("org/jetbrains/plugins/spotbugs/core/IncrementalAnalysisCacheTest"));
+    }
+
+    @Test
+    public void testStoreAndReplay() throws IOException {
+        final File cacheDir = temp.newFolder("cache");
+        final File classes = temp.newFolder("classes");
+        final File lib = temp.newFolder("lib");
+        final File classA = writeClass(classes, "test/A", "test/B");
+        writeClass(lib, "test/B", null);
+
+        final Project first = createProject(classA, lib);
+        final IncrementalAnalysisCache cache = IncrementalAnalysisCache.open(cacheDir, first, FINGERPRINT);
+        assertEquals(0, cache.replay(first, (className, bugs) -> {
+            throw new AssertionError(className);
+        }));
+        assertEquals(1, first.getFileList().size());
+        cache.store(createBugCollection("test.A"));
+
+        final Project second = createProject(classA, lib);
+        final Map<String, List<BugInstance>> replayed = new HashMap<>();
+        assertEquals(1, IncrementalAnalysisCache.open(cacheDir, second, FINGERPRINT).replay(second, replayed::put));
+        assertTrue(second.getFileList().isEmpty());
+        assertEquals(Collections.singleton("test.A"), replayed.keySet());
+        assertEquals(1, replayed.get("test.A").size());
+        assertEquals("test.A", replayed.get("test.A").get(0).getPrimaryClass().getClassName());
+    }
+
+    @Test
+    public void testReferencedClassChanged() throws IOException {
+        final File cacheDir = temp.newFolder("cache");
+        final File classes = temp.newFolder("classes");
+        final File lib = temp.newFolder("lib");
+        final File classA = writeClass(classes, "test/A", "test/B");
+        writeClass(lib, "test/B", null);
+
+        final Project first = createProject(classA, lib);
+        final IncrementalAnalysisCache cache = IncrementalAnalysisCache.open(cacheDir, first, FINGERPRINT);
+        cache.replay(first, (className, bugs) -> {
+        });
+        cache.store(createBugCollection("test.A"));
+
+        writeClass(lib, "test/B", "java/lang/Runnable");
+        final Project second = createProject(classA, lib);
+        assertEquals(0, IncrementalAnalysisCache.open(cacheDir, second, FINGERPRINT).replay(second, (className, bugs) -> {
+            throw new AssertionError(className);
+        }));
+        assertEquals(1, second.getFileList().size());
+    }
+
+    @Test
+    public void testFingerprintChanged() throws IOException {
+        final File cacheDir = temp.newFolder("cache");
+        final File classes = temp.newFolder("classes");
+        final File classA = writeClass(classes, "test/A", null);
+
+        final Project first = createProject(classA, null);
+        final IncrementalAnalysisCache cache = IncrementalAnalysisCache.open(cacheDir, first, FINGERPRINT);
+        cache.replay(first, (className, bugs) -> {
+        });
+        cache.store(createBugCollection("test.A"));
+
+        final Project second = createProject(classA, null);
+        assertEquals(0, IncrementalAnalysisCache.open(cacheDir, second, FINGERPRINT + "2").replay(second, (className, bugs) -> {
+            throw new AssertionError(className);
+        }));
+    }
+
+    @Test
+    public void testClasspathArchiveChanged() throws IOException {
+        final File jar = temp.newFile("lib.jar");
+        Files.write(jar.toPath(), new byte[]{1, 2, 3});
+        final String before = appendClasspath(jar);
+        Files.write(jar.toPath(), new byte[]{1, 2, 3, 4});
+        assertNotEquals(before, appendClasspath(jar));
+    }
+
+    @NotNull
+    private static String appendClasspath(@NotNull final File entry) {
+        final StringBuilder ret = new StringBuilder();
+        IncrementalAnalysisCache.appendClasspath(ret, Collections.singletonList(entry.getPath()));
+        return ret.toString();
+    }
+
+    @NotNull
+    private static Project createProject(@NotNull final File classFile, @Nullable final File auxClasspathEntry) {
+        final Project ret = new Project();
+        ret.addFile(classFile.getPath());
+        if (auxClasspathEntry != null) {
+            ret.addAuxClasspathEntry(auxClasspathEntry.getPath());
+        }
+        return ret;
+    }
+
+    @NotNull
+    private static SortedBugCollection createBugCollection(@NotNull final String className) {
+        final SortedBugCollection ret = new SortedBugCollection(new Project());
+        ret.add(new BugInstance("NP_ALWAYS_NULL", 1).addClass(className), false);
+        return ret;
+    }
+
+    /**
+     * Writes an empty class, {@code fieldType} adds a field which references another class.
+     */
+    @NotNull
+    private static File writeClass(@NotNull final File root, @NotNull final String internalName, @Nullable final String fieldType) throws IOException {
+        final ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+        if (fieldType != null) {
+            writer.visitField(Opcodes.ACC_PRIVATE, "field", "L" + fieldType + ";", null, null).visitEnd();
+            // a field descriptor is no class constant, add the class to the constant pool as well
+            writer.newClass(fieldType);
+        }
+        writer.visitEnd();
+        final File ret = new File(root, internalName + ".class");
+        Files.createDirectories(ret.getParentFile().toPath());
+        Files.write(ret.toPath(), writer.toByteArray());
+        return ret;
+    }
+}
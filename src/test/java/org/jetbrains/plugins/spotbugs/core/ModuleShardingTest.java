@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ModuleShardingTest {
+
+    @Test
+    public void testSplit() {
+        final List<String> files = Arrays.asList("e", "b", "a", "d", "c");
+        final List<List<String>> shards = ModuleSharding.split(files, 2);
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d", "e")), shards);
+    }
+
+    @Test
+    public void testSplitIndependentOfOrder() {
+        final List<String> files = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            files.add("file" + i);
+        }
+        final List<String> reversed = new ArrayList<>(files);
+        Collections.reverse(reversed);
+        assertEquals(ModuleSharding.split(files, 7), ModuleSharding.split(reversed, 7));
+    }
+}
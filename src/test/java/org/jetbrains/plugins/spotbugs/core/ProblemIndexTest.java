@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.core;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.spotbugs.common.ExtendedProblemDescriptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The problems are added to the {@link ProblemCacheService} directly, their anchors are resolved on demand.
+ */
+public class ProblemIndexTest extends JavaCodeInsightFixtureTestCase {
+
+    private static final String CLASS_NAME = "ClassStartsWithAccessModifier";
+
+    private ProblemCacheService problemCacheService;
+
+    @Override
+    protected String getTestDataPath() {
+        return "src/test/testData/";
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.configureByFile(CLASS_NAME + ".java");
+        problemCacheService = getProject().getService(ProblemCacheService.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            problemCacheService.getProblems().clear();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testFileWithoutProblems() {
+        assertNull(problemCacheService.getIndex(myFixture.getFile()));
+    }
+
+    public void testGetStartingAt() {
+        final ExtendedProblemDescriptor method = addProblem(myFixture.getFile(), 10);
+        final ExtendedProblemDescriptor methodAgain = addProblem(myFixture.getFile(), 10);
+        final ExtendedProblemDescriptor nestedClass = addProblem(myFixture.getFile(), 3);
+
+        final ProblemIndex index = problemCacheService.getIndex(myFixture.getFile());
+        assertNotNull(index);
+        assertTrue(method.isResolved());
+        assertEquals("methodStartsWithAccessModifier", getAnchorText(method));
+        assertEquals("ClassStartsWithStatic", getAnchorText(nestedClass));
+        final int methodOffset = getStartOffset(method);
+        assertEquals(Arrays.asList(method, methodAgain), index.getStartingAt(methodOffset));
+        assertEquals(Collections.singletonList(nestedClass), index.getStartingAt(getStartOffset(nestedClass)));
+        assertEmpty(index.getStartingAt(methodOffset + 1));
+        assertSame(index, problemCacheService.getIndex(myFixture.getFile()));
+    }
+
+    public void testIndexOfOtherFileIsKept() {
+        final PsiFile other = myFixture.addFileToProject("Other.java", "public class Other {\n    void other() {\n    }\n}\n");
+        addProblem(myFixture.getFile(), 10);
+        final ProblemIndex index = problemCacheService.getIndex(myFixture.getFile());
+
+        final ExtendedProblemDescriptor otherMethod = addProblem(other, 2);
+        assertNotNull(problemCacheService.getIndex(other));
+        assertTrue(otherMethod.isResolved());
+        assertSame(index, problemCacheService.getIndex(myFixture.getFile()));
+    }
+
+    public void testAddedProblemUpdatesIndex() {
+        addProblem(myFixture.getFile(), 10);
+        final ProblemIndex index = problemCacheService.getIndex(myFixture.getFile());
+
+        final ExtendedProblemDescriptor nestedClass = addProblem(myFixture.getFile(), 3);
+        final ProblemIndex updated = problemCacheService.getIndex(myFixture.getFile());
+        assertNotSame(index, updated);
+        assertEquals(Collections.singletonList(nestedClass), updated.getStartingAt(getStartOffset(nestedClass)));
+    }
+
+    public void testEditBeforeAnchorIsNotStale() {
+        final ExtendedProblemDescriptor method = addProblem(myFixture.getFile(), 10);
+        problemCacheService.getIndex(myFixture.getFile());
+
+        edit(0, 0, "// comment\n");
+        assertFalse(method.isStale());
+        assertEquals("methodStartsWithAccessModifier", getAnchorText(method));
+    }
+
+    public void testRenamedAnchorIsStale() {
+        final ExtendedProblemDescriptor method = addProblem(myFixture.getFile(), 10);
+        problemCacheService.getIndex(myFixture.getFile());
+        final int startOffset = getStartOffset(method);
+
+        // same length, so only the text tells the edit
+        edit(startOffset, startOffset + "methodStartsWithAccessModifier".length(), "renamedMethodWithSameLength123");
+        assertTrue(method.isStale());
+        assertNull(method.getResolvedPsiElement());
+        final ProblemIndex index = problemCacheService.getIndex(myFixture.getFile());
+        assertNotNull(index);
+        assertEmpty(index.getStartingAt(startOffset));
+    }
+
+    @NotNull
+    private ExtendedProblemDescriptor addProblem(@NotNull final PsiFile psiFile, final int line) {
+        final String className = psiFile.getVirtualFile().getNameWithoutExtension();
+        final BugInstance bugInstance = new BugInstance("NP_ALWAYS_NULL", 1)
+                .addClass(className)
+                .addSourceLine(new SourceLineAnnotation(className, psiFile.getName(), line, line, -1, -1));
+        final Bug bug = new Bug(getModule(), new SortedBugCollection(), bugInstance);
+        final ExtendedProblemDescriptor ret = new ExtendedProblemDescriptor(getProject(), psiFile.getVirtualFile(), bug);
+        problemCacheService.getProblems().computeIfAbsent(psiFile.getVirtualFile(), k -> new ArrayList<>()).add(ret);
+        return ret;
+    }
+
+    private void edit(final int startOffset, final int endOffset, @NotNull final String text) {
+        final Document document = myFixture.getEditor().getDocument();
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.replaceString(startOffset, endOffset, text));
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    }
+
+    @NotNull
+    private static String getAnchorText(@NotNull final ExtendedProblemDescriptor descriptor) {
+        final PsiElement element = descriptor.getResolvedPsiElement();
+        assertNotNull(element);
+        return element.getText();
+    }
+
+    private static int getStartOffset(@NotNull final ExtendedProblemDescriptor descriptor) {
+        final PsiElement element = descriptor.getResolvedPsiElement();
+        assertNotNull(element);
+        final TextRange textRange = element.getTextRange();
+        return textRange.getStartOffset();
+    }
+}
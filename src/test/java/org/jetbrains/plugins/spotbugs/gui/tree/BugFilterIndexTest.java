@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.gui.tree;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugRanker;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.spotbugs.core.Bug;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BugFilterIndexTest {
+
+    private Bug nullA;
+    private Bug deadStoreA;
+    private Bug badFieldB;
+    private Bug nullOther;
+    private BugFilterIndex index;
+
+    @Before
+    public void setUp() {
+        final SortedBugCollection bugCollection = new SortedBugCollection();
+        nullA = createBug(bugCollection, "NP_ALWAYS_NULL", Priorities.HIGH_PRIORITY, "test.a.A");
+        deadStoreA = createBug(bugCollection, "DLS_DEAD_LOCAL_STORE", Priorities.LOW_PRIORITY, "test.a.A$Inner");
+        badFieldB = createBug(bugCollection, "SE_BAD_FIELD", Priorities.NORMAL_PRIORITY, "test.b.B");
+        nullOther = createBug(bugCollection, "NP_ALWAYS_NULL", Priorities.NORMAL_PRIORITY, "other.C");
+        index = new BugFilterIndex();
+        for (final Bug bug : Arrays.asList(nullA, deadStoreA, badFieldB, nullOther)) {
+            index.add(bug);
+        }
+    }
+
+    @Test
+    public void testNoFilter() {
+        assertEquals(Arrays.asList(nullA, deadStoreA, badFieldB, nullOther), index.filter(BugFilterIndex.Filter.NONE));
+        assertTrue(BugFilterIndex.Filter.NONE.isNone());
+    }
+
+    @Test
+    public void testFilterByPriority() {
+        assertFilter(Collections.singletonList(nullA), createFilter(Priorities.HIGH_PRIORITY, Collections.emptySet(), "", null));
+        assertFilter(Arrays.asList(nullA, badFieldB, nullOther), createFilter(Priorities.NORMAL_PRIORITY, Collections.emptySet(), "", null));
+    }
+
+    @Test
+    public void testFilterByCategory() {
+        final String hidden = nullA.getSortKey().getCategory();
+        assertFilter(Arrays.asList(deadStoreA, badFieldB), createFilter(Priorities.IGNORE_PRIORITY, Collections.singleton(hidden), "", null));
+    }
+
+    @Test
+    public void testFilterByPackagePrefix() {
+        assertFilter(Arrays.asList(nullA, deadStoreA, badFieldB), createFilter(Priorities.IGNORE_PRIORITY, Collections.emptySet(), "test.", null));
+        assertFilter(Arrays.asList(nullA, deadStoreA), createFilter(Priorities.IGNORE_PRIORITY, Collections.emptySet(), "test.a", null));
+    }
+
+    @Test
+    public void testFilterByBugPattern() {
+        assertFilter(Arrays.asList(nullA, nullOther), createFilter(Priorities.IGNORE_PRIORITY, Collections.emptySet(), "", "NP_ALWAYS_NULL"));
+        assertFilter(Collections.emptyList(), createFilter(Priorities.IGNORE_PRIORITY, Collections.emptySet(), "", "UNKNOWN_PATTERN"));
+    }
+
+    @Test
+    public void testCombinedFilter() {
+        assertFilter(Collections.singletonList(nullOther), createFilter(Priorities.NORMAL_PRIORITY, Collections.emptySet(), "other", "NP_ALWAYS_NULL"));
+    }
+
+    @Test
+    public void testColumnValues() {
+        assertEquals(new TreeSet<>(Arrays.asList("DLS_DEAD_LOCAL_STORE", "NP_ALWAYS_NULL", "SE_BAD_FIELD")), index.getBugPatterns());
+        final Set<String> categories = Arrays.asList(nullA, deadStoreA, badFieldB).stream()
+                .map(bug -> bug.getSortKey().getCategory())
+                .collect(Collectors.toCollection(TreeSet::new));
+        assertEquals(categories, index.getCategories());
+    }
+
+    @Test
+    public void testRemoveIf() {
+        final List<Bug> removed = index.removeIf(bug -> "test.a.A".equals(bug.getSortKey().getClassName()));
+
+        assertEquals(Arrays.asList(nullA, deadStoreA), removed);
+        assertEquals(2, index.size());
+        assertEquals(badFieldB, index.getBug(0));
+        assertEquals(Arrays.asList(badFieldB, nullOther), index.filter(BugFilterIndex.Filter.NONE));
+        assertFilter(Collections.singletonList(nullOther), createFilter(Priorities.IGNORE_PRIORITY, Collections.emptySet(), "", "NP_ALWAYS_NULL"));
+        assertEquals(new TreeSet<>(Arrays.asList("NP_ALWAYS_NULL", "SE_BAD_FIELD")), index.getBugPatterns());
+    }
+
+    @Test
+    public void testRemoveIfNoneMatches() {
+        assertTrue(index.removeIf(bug -> false).isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testClear() {
+        index.clear();
+        assertTrue(index.isEmpty());
+        assertTrue(index.filter(BugFilterIndex.Filter.NONE).isEmpty());
+        assertTrue(index.getBugPatterns().isEmpty());
+    }
+
+    /**
+     * The filter of the index and {@link BugFilterIndex.Filter#accepts(Bug)} must agree on the bugs of the index.
+     */
+    private void assertFilter(@NotNull final List<Bug> expected, @NotNull final BugFilterIndex.Filter filter) {
+        assertEquals(expected, index.filter(filter));
+        final List<Bug> accepted = index.filter(BugFilterIndex.Filter.NONE).stream()
+                .filter(filter::accepts)
+                .collect(Collectors.toList());
+        assertEquals(expected, accepted);
+    }
+
+    @NotNull
+    private static BugFilterIndex.Filter createFilter(final int maxPriority, @NotNull final Set<String> hiddenCategories, @NotNull final String packagePrefix, @Nullable final String bugPattern) {
+        return new BugFilterIndex.Filter(BugRanker.VISIBLE_RANK_MAX, maxPriority, hiddenCategories, packagePrefix, bugPattern);
+    }
+
+    @NotNull
+    private static Bug createBug(@NotNull final SortedBugCollection bugCollection, @NotNull final String type, final int priority, @NotNull final String className) {
+        final BugInstance bugInstance = new BugInstance(type, priority).addClass(className);
+        bugCollection.add(bugInstance, false);
+        return new Bug(null, bugCollection, bugInstance);
+    }
+}
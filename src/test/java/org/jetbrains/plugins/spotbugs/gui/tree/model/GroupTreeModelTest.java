@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 SpotBugs plugin contributors
+ *
+ * This file is part of IntelliJ SpotBugs plugin.
+ *
+ * IntelliJ SpotBugs plugin is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * IntelliJ SpotBugs plugin is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with IntelliJ SpotBugs plugin.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jetbrains.plugins.spotbugs.gui.tree.model;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.spotbugs.common.ExtendedProblemDescriptor;
+import org.jetbrains.plugins.spotbugs.core.Bug;
+import org.jetbrains.plugins.spotbugs.core.ProblemCacheService;
+import org.jetbrains.plugins.spotbugs.gui.tree.GroupBy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups by class and bug type, so each class is a top level group.
+ */
+public class GroupTreeModelTest extends JavaCodeInsightFixtureTestCase {
+
+    private static final String CLASS_NAME = "ClassStartsWithAccessModifier";
+
+    private RootNode root;
+    private GroupTreeModel model;
+    private VirtualFile sourceFile;
+    private SortedBugCollection bugCollection;
+
+    @Override
+    protected String getTestDataPath() {
+        return "src/test/testData/";
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        sourceFile = myFixture.configureByFile(CLASS_NAME + ".java").getVirtualFile();
+        root = new RootNode("test");
+        model = new GroupTreeModel(root, new GroupBy[]{GroupBy.Class, GroupBy.BugType}, getProject());
+        bugCollection = new SortedBugCollection();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            getProject().getService(ProblemCacheService.class).getProblems().clear();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testAddNodes() {
+        final Bug nullA = createBug("NP_ALWAYS_NULL", CLASS_NAME);
+        final Bug deadStoreA = createBug("DLS_DEAD_LOCAL_STORE", CLASS_NAME);
+        final Bug nullB = createBug("NP_ALWAYS_NULL", "test.B");
+
+        model.addNodes(Arrays.asList(nullA, deadStoreA, nullB));
+
+        assertEquals(3, model.getBugCount());
+        assertEquals(2, root.getChildCount());
+        assertEquals(2, root.getChildAt(indexOfGroup(nullA)).getChildCount());
+        assertSameElements(model.getBugs(), nullA, deadStoreA, nullB);
+        assertNotNull(model.findNodeByBugInstance(nullA));
+        assertNotNull(model.findNodeByBugInstance(nullB));
+        assertEquals(2, model.getProblems().get(sourceFile).size());
+    }
+
+    public void testAddNodeToExistingGroup() {
+        final Bug first = createBug("NP_ALWAYS_NULL", CLASS_NAME, 10);
+        final Bug second = createBug("NP_ALWAYS_NULL", CLASS_NAME, 3);
+
+        model.addNode(first);
+        model.addNode(second);
+
+        assertEquals(2, model.getBugCount());
+        assertEquals(1, root.getChildCount());
+        assertEquals(1, root.getChildAt(0).getChildCount());
+        assertNotNull(model.findNodeByBugInstance(second));
+    }
+
+    public void testBulkLoadReplacesContent() {
+        final Bug old = createBug("NP_ALWAYS_NULL", "test.Old");
+        final Bug oldA = createBug("DLS_DEAD_LOCAL_STORE", CLASS_NAME);
+        model.addNodes(Arrays.asList(old, oldA));
+        final Map<VirtualFile, List<ExtendedProblemDescriptor>> problems = model.getProblems();
+
+        final Bug nullA = createBug("NP_ALWAYS_NULL", CLASS_NAME);
+        final Bug nullB = createBug("NP_ALWAYS_NULL", "test.B");
+        final GroupTreeModel.BulkLoad bulkLoad = model.beginBulkLoad();
+        bulkLoad.addAll(Arrays.asList(nullA, nullB));
+        assertEquals(2, root.getChildCount()); // detached until commit
+        assertNull(model.findNodeByBugInstance(nullA));
+        bulkLoad.commit();
+
+        assertEquals(2, model.getBugCount());
+        assertEquals(2, root.getChildCount());
+        assertSameElements(model.getBugs(), nullA, nullB);
+        assertNull(model.findNodeByBugInstance(old));
+        assertNotNull(model.findNodeByBugInstance(nullA));
+        assertSame(problems, model.getProblems()); // shared with the problem cache
+        assertEquals(Collections.singleton(sourceFile), problems.keySet());
+        assertEquals(1, problems.get(sourceFile).size());
+        assertSame(nullA, problems.get(sourceFile).get(0).getBug());
+        try {
+            bulkLoad.commit();
+            fail("committed twice");
+        } catch (final IllegalStateException ignored) {
+        }
+    }
+
+    public void testBulkLoadWithOtherGrouping() {
+        final Bug nullA = createBug("NP_ALWAYS_NULL", CLASS_NAME);
+        final Bug nullB = createBug("NP_ALWAYS_NULL", "test.B");
+        final GroupBy[] groupBy = GroupBy.getSortOrderGroup(GroupBy.BugCategory);
+
+        final GroupTreeModel.BulkLoad bulkLoad = model.beginBulkLoad(groupBy);
+        bulkLoad.addAll(Arrays.asList(nullA, nullB));
+        bulkLoad.commit();
+
+        assertOrderedEquals(model.getGroupBy(), groupBy);
+        assertEquals(1, root.getChildCount()); // same category
+        assertEquals(2, model.getBugCount());
+    }
+
+    public void testRemoveNodes() {
+        final Bug nullA = createBug("NP_ALWAYS_NULL", CLASS_NAME);
+        final Bug deadStoreA = createBug("DLS_DEAD_LOCAL_STORE", CLASS_NAME);
+        final Bug nullB = createBug("NP_ALWAYS_NULL", "test.B");
+        model.addNodes(Arrays.asList(nullA, deadStoreA, nullB));
+
+        model.removeNodes(Arrays.asList(deadStoreA, nullB));
+
+        assertEquals(1, model.getBugCount());
+        assertEquals(1, root.getChildCount()); // empty class group removed
+        assertEquals(1, root.getChildAt(0).getChildCount()); // empty bug type group removed
+        assertSameElements(model.getBugs(), nullA);
+        assertNull(model.findNodeByBugInstance(deadStoreA));
+        assertEquals(1, model.getProblems().get(sourceFile).size());
+    }
+
+    public void testRemoveNodesIgnoresUnknownBugs() {
+        final Bug nullA = createBug("NP_ALWAYS_NULL", CLASS_NAME);
+        model.addNode(nullA);
+
+        model.removeNodes(Collections.singletonList(createBug("NP_ALWAYS_NULL", "test.B")));
+
+        assertEquals(1, model.getBugCount());
+        assertEquals(1, root.getChildCount());
+    }
+
+    public void testReAddAfterRemove() {
+        final Bug nullA = createBug("NP_ALWAYS_NULL", CLASS_NAME);
+        model.addNode(nullA);
+        model.removeNodes(Collections.singletonList(nullA));
+        assertEquals(0, model.getBugCount());
+        assertEquals(0, root.getChildCount());
+        assertNull(model.getProblems().get(sourceFile));
+
+        // the removed groups must not be found by their group path anymore
+        final Bug again = createBug("NP_ALWAYS_NULL", CLASS_NAME, 3);
+        model.addNode(again);
+        assertEquals(1, model.getBugCount());
+        assertEquals(1, root.getChildCount());
+        assertNotNull(model.findNodeByBugInstance(again));
+    }
+
+    @NotNull
+    private Bug createBug(@NotNull final String type, @NotNull final String className) {
+        return createBug(type, className, 10);
+    }
+
+    @NotNull
+    private Bug createBug(@NotNull final String type, @NotNull final String className, final int line) {
+        final String sourceFileName = className.substring(className.lastIndexOf('.') + 1) + ".java";
+        final BugInstance bugInstance = new BugInstance(type, 1)
+                .addClass(className, sourceFileName)
+                .addSourceLine(new SourceLineAnnotation(className, sourceFileName, line, line, -1, -1));
+        bugCollection.add(bugInstance, false);
+        return new Bug(getModule(), bugCollection, bugInstance);
+    }
+
+    private int indexOfGroup(@NotNull final Bug bug) {
+        final BugInstanceNode node = model.findNodeByBugInstance(bug);
+        assertNotNull(node);
+        return root.getIndex(node.getParent().getParent());
+    }
+}